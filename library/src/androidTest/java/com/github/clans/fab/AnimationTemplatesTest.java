@@ -0,0 +1,87 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Transformation;
+
+public class AnimationTemplatesTest extends InstrumentationTestCase {
+
+    private static final int[] ANIMATIONS = {
+            R.anim.fab_scale_up,
+            R.anim.fab_scale_down,
+            R.anim.fab_slide_in_from_left,
+            R.anim.fab_slide_in_from_right,
+            R.anim.fab_slide_out_to_left,
+            R.anim.fab_slide_out_to_right,
+            R.anim.fab_extended_hide,
+            R.anim.fab_extended_replace
+    };
+    private static final int LOADS = 200;
+
+    public void testTemplatesMatchParsedAnimations() {
+        Context context = getInstrumentation().getTargetContext();
+        for (int id : ANIMATIONS) {
+            String name = context.getResources().getResourceEntryName(id);
+            Animation expected = AnimationUtils.loadAnimation(context, id);
+            Animation actual = AnimationTemplates.load(context, id);
+
+            assertEquals(name, expected.getClass(), actual.getClass());
+            assertEquals(name, expected.getStartOffset(), actual.getStartOffset());
+            assertEquals(name, expected.getRepeatCount(), actual.getRepeatCount());
+            assertEquals(name, expected.getRepeatMode(), actual.getRepeatMode());
+            assertEquals(name, expected.getFillAfter(), actual.getFillAfter());
+
+            expected.initialize(100, 80, 400, 300);
+            actual.initialize(100, 80, 400, 300);
+            assertEquals(name, expected.computeDurationHint(), actual.computeDurationHint());
+            expected.setStartTime(0);
+            actual.setStartTime(0);
+            long duration = expected.computeDurationHint();
+            for (int i = 0; i <= 10; i++) {
+                long time = duration * i / 10;
+                Transformation expectedTransformation = new Transformation();
+                Transformation actualTransformation = new Transformation();
+                expected.getTransformation(time, expectedTransformation);
+                actual.getTransformation(time, actualTransformation);
+                assertEquals(name + " at " + time, expectedTransformation.getAlpha(),
+                        actualTransformation.getAlpha(), 0.001f);
+                assertEquals(name + " at " + time, expectedTransformation.getMatrix(),
+                        actualTransformation.getMatrix());
+            }
+        }
+    }
+
+    public void testEveryLoadReturnsANewAnimation() {
+        Context context = getInstrumentation().getTargetContext();
+        Animation first = AnimationTemplates.load(context, R.anim.fab_scale_up);
+        Animation second = AnimationTemplates.load(context, R.anim.fab_scale_up);
+        assertNotSame(first, second);
+    }
+
+    public void testLoadTime() {
+        Context context = getInstrumentation().getTargetContext();
+        AnimationTemplates.load(context, R.anim.fab_slide_in_from_left);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOADS; i++) {
+            AnimationUtils.loadAnimation(context, R.anim.fab_slide_in_from_left);
+        }
+        long parsed = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < LOADS; i++) {
+            AnimationTemplates.load(context, R.anim.fab_slide_in_from_left);
+        }
+        long templates = System.nanoTime() - start;
+
+        Bundle results = new Bundle();
+        results.putLong("parsedMicros", parsed / LOADS / 1000);
+        results.putLong("templateMicros", templates / LOADS / 1000);
+        Log.i("FabBenchmark", "animation load: " + results);
+        getInstrumentation().sendStatus(0, results);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creates 50 identically colored fills and buttons and reports the memory they take, with the
+ * fills sharing their state and with every fill mutated into a state of its own.
+ */
+public class FillMemoryBenchmark extends InstrumentationTestCase {
+
+    private static final String TAG = "FabBenchmark";
+    private static final int BUTTONS = 50;
+    private static final int COLOR_NORMAL = 0xFFDA4336;
+    private static final int COLOR_PRESSED = 0xFFE75043;
+    private static final int COLOR_DISABLED = 0xFFAAAAAA;
+    private static final int[] STATE_ENABLED = {android.R.attr.state_enabled};
+
+    @UiThreadTest
+    public void testFiftyIdenticalButtons() {
+        final Context context = getInstrumentation().getTargetContext();
+        final Resources res = context.getResources();
+        final int size = res.getDimensionPixelSize(R.dimen.fab_size_normal);
+        // The first button of a screen creates the shared state
+        FillStates.newDrawable(COLOR_NORMAL, COLOR_PRESSED, COLOR_DISABLED, res);
+
+        long shared = measure("sharedFills", new Factory() {
+            @Override
+            public Object create() {
+                return prepare(FillStates.newDrawable(COLOR_NORMAL, COLOR_PRESSED, COLOR_DISABLED, res), size);
+            }
+        });
+        long mutated = measure("mutatedFills", new Factory() {
+            @Override
+            public Object create() {
+                return prepare(FillStates.newDrawable(COLOR_NORMAL, COLOR_PRESSED, COLOR_DISABLED, res).mutate(), size);
+            }
+        });
+        measure("buttons", new Factory() {
+            @Override
+            public Object create() {
+                FloatingActionButton fab = new FloatingActionButton(context);
+                fab.setColorNormal(COLOR_NORMAL);
+                fab.setColorPressed(COLOR_PRESSED);
+                fab.setColorDisabled(COLOR_DISABLED);
+                int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+                fab.measure(spec, spec);
+                fab.layout(0, 0, fab.getMeasuredWidth(), fab.getMeasuredHeight());
+                return fab;
+            }
+        });
+
+        assertTrue("shared fills took " + shared + " bytes, mutated " + mutated, shared < mutated);
+    }
+
+    private static Drawable prepare(Drawable fill, int size) {
+        fill.setBounds(0, 0, size, size);
+        fill.setState(STATE_ENABLED);
+        return fill;
+    }
+
+    /**
+     * @return the bytes allocated to create the objects
+     */
+    @SuppressWarnings("deprecation")
+    private long measure(String name, Factory factory) {
+        List<Object> retained = new ArrayList<>(BUTTONS);
+        long heapBefore = getUsedHeap();
+
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        for (int i = 0; i < BUTTONS; i++) {
+            retained.add(factory.create());
+        }
+        Debug.stopAllocCounting();
+        long allocated = Debug.getThreadAllocSize();
+
+        long retainedHeap = getUsedHeap() - heapBefore;
+        Log.i(TAG, String.format(Locale.US, "%s: %d bytes allocated, %d bytes retained for %d",
+                name, allocated, retainedHeap, retained.size()));
+
+        Bundle results = new Bundle();
+        results.putLong(name + ".allocatedBytes", allocated);
+        results.putLong(name + ".retainedBytes", retainedHeap);
+        getInstrumentation().sendStatus(0, results);
+        return allocated;
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private interface Factory {
+        Object create();
+    }
+}
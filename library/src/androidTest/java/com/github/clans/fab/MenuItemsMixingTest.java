@@ -0,0 +1,79 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MenuItemsMixingTest extends InstrumentationTestCase {
+
+    private Context mContext;
+    private FloatingActionMenu mMenu;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+        mMenu = new FloatingActionMenu(mContext);
+        // Sets up the menu the way inflation does
+        mMenu.onFinishInflate();
+    }
+
+    @UiThreadTest
+    public void testAddingButtonToMenuWithItemsThrows() {
+        mMenu.setMenuItems(items(3));
+
+        try {
+            mMenu.addMenuButton(new FloatingActionButton(mContext));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            mMenu.addMenuButton(new FloatingActionButton(mContext), 0);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @UiThreadTest
+    public void testSettingItemsOnMenuWithButtonsThrows() {
+        mMenu.addMenuButton(new FloatingActionButton(mContext));
+
+        try {
+            mMenu.setMenuItems(items(3));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // Clearing the items is still allowed
+        mMenu.setMenuItems(Collections.<FloatingMenuItem>emptyList());
+    }
+
+    @UiThreadTest
+    public void testSwitchingAfterRemovingAllButtons() {
+        mMenu.addMenuButton(new FloatingActionButton(mContext));
+        mMenu.removeAllMenuButtons();
+        mMenu.setMenuItems(items(3));
+
+        mMenu.removeAllMenuButtons();
+        mMenu.addMenuButton(new FloatingActionButton(mContext));
+    }
+
+    @UiThreadTest
+    public void testReplacingItemsKeepsThemAllowed() {
+        mMenu.setMenuItems(items(3));
+        mMenu.setMenuItems(items(5));
+        mMenu.setMenuItems(null);
+        mMenu.addMenuButton(new FloatingActionButton(mContext));
+    }
+
+    private static List<FloatingMenuItem> items(int count) {
+        List<FloatingMenuItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new FloatingMenuItem(i, 0, "Item " + i));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.View;
+import android.view.ViewGroup;
+
+public class MenuLayoutVisibilityTest extends InstrumentationTestCase {
+
+    private static final int ITEMS = 5;
+    private static final int LAYOUTS = 100;
+
+    @UiThreadTest
+    public void testLayoutsOfClosedMenuDoNotChangeVisibility() {
+        Context context = getInstrumentation().getTargetContext();
+        FloatingActionMenu menu = new FloatingActionMenu(context);
+        menu.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        CountingButton[] buttons = new CountingButton[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            buttons[i] = new CountingButton(context);
+            buttons[i].setLabelText("Item " + i);
+            menu.addView(buttons[i]);
+        }
+        // Sets up the buttons and labels the way inflation does
+        menu.onFinishInflate();
+        layout(menu, 0);
+
+        int[] labelVisibilities = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            buttons[i].mVisibilityChanges = 0;
+            labelVisibilities[i] = buttons[i].getLabelView().getVisibility();
+        }
+
+        for (int i = 0; i < LAYOUTS; i++) {
+            menu.requestLayout();
+            // Alternates the available size so that every pass really lays the children out
+            layout(menu, i % 2);
+        }
+
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals("button " + i, 0, buttons[i].mVisibilityChanges);
+            assertEquals("label " + i, labelVisibilities[i], buttons[i].getLabelView().getVisibility());
+        }
+    }
+
+    private static void layout(View view, int extra) {
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        view.measure(spec, spec);
+        view.layout(extra, extra, extra + view.getMeasuredWidth(), extra + view.getMeasuredHeight());
+    }
+
+    private static class CountingButton extends FloatingActionButton {
+
+        int mVisibilityChanges;
+
+        CountingButton(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void setVisibility(int visibility) {
+            super.setVisibility(visibility);
+            mVisibilityChanges++;
+        }
+
+        @Override
+        public void show(boolean animate) {
+            super.show(animate);
+            mVisibilityChanges++;
+        }
+
+        @Override
+        public void hide(boolean animate) {
+            super.hide(animate);
+            mVisibilityChanges++;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.clans.fab;
+
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProgressAllocationTest extends InstrumentationTestCase {
+
+    private static final int UPDATES = 600;
+
+    @UiThreadTest
+    @SuppressWarnings("deprecation")
+    public void testSteadyProgressUpdatesDoNotAllocate() {
+        FloatingActionButton fab = new FloatingActionButton(getInstrumentation().getTargetContext());
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        fab.measure(spec, spec);
+        fab.layout(0, 0, fab.getMeasuredWidth(), fab.getMeasuredHeight());
+
+        // Showing the progress bar builds the background once
+        fab.setProgress(1, false);
+        for (int i = 0; i < UPDATES; i++) {
+            fab.setProgress(i % 100, false);
+        }
+        List<Drawable> drawables = collectDrawables(fab.getBackground(), new ArrayList<Drawable>());
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < UPDATES; i++) {
+            fab.setProgress(i % 100, false);
+        }
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        assertEquals(drawables, collectDrawables(fab.getBackground(), new ArrayList<Drawable>()));
+        assertEquals(0, allocations);
+    }
+
+    private static List<Drawable> collectDrawables(Drawable drawable, List<Drawable> drawables) {
+        drawables.add(drawable);
+        if (drawable instanceof LayerDrawable) {
+            LayerDrawable layers = (LayerDrawable) drawable;
+            for (int i = 0; i < layers.getNumberOfLayers(); i++) {
+                collectDrawables(layers.getDrawable(i), drawables);
+            }
+        }
+        return drawables;
+    }
+}
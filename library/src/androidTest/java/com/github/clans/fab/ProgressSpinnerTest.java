@@ -0,0 +1,47 @@
+package com.github.clans.fab;
+
+import android.graphics.drawable.AnimatedVectorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.os.Build;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.View;
+
+public class ProgressSpinnerTest extends InstrumentationTestCase {
+
+    @UiThreadTest
+    public void testSpinnerIsPartOfTheBackgroundWhileIndeterminate() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return;
+
+        FloatingActionButton fab = new FloatingActionButton(getInstrumentation().getTargetContext());
+        fab.setProgressOnRenderThread(true);
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        fab.measure(spec, spec);
+        fab.layout(0, 0, fab.getMeasuredWidth(), fab.getMeasuredHeight());
+        Drawable background = fab.getBackground();
+        assertFalse(hasSpinner(background));
+
+        fab.setIndeterminate(true);
+        assertSame(background, fab.getBackground());
+        assertTrue(hasSpinner(background));
+
+        fab.hideProgress();
+        assertFalse(hasSpinner(background));
+
+        fab.setIndeterminate(true);
+        fab.setProgressOnRenderThread(false);
+        assertFalse(hasSpinner(background));
+    }
+
+    private static boolean hasSpinner(Drawable drawable) {
+        if (drawable instanceof AnimatedVectorDrawable) return true;
+        if (drawable instanceof LayerDrawable) {
+            LayerDrawable layers = (LayerDrawable) drawable;
+            for (int i = 0; i < layers.getNumberOfLayers(); i++) {
+                if (hasSpinner(layers.getDrawable(i))) return true;
+            }
+        }
+        return false;
+    }
+}
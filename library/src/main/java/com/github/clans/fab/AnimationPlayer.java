@@ -0,0 +1,222 @@
+package com.github.clans.fab;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.graphics.Matrix;
+import android.view.View;
+import android.view.animation.Animation;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.Transformation;
+
+/**
+ * Plays view {@link Animation}s through view properties instead of {@link View#startAnimation}.
+ * <p>
+ * A property animator samples the transformation of the animation every frame and applies it as
+ * scale, rotation, translation and alpha of the view. The view is kept on a hardware layer
+ * meanwhile, so frames only update layer properties and the view is not redrawn. Any animation
+ * works this way, including the XML ones of the library and animations set by users, and its
+ * listener is still notified.
+ * <p>
+ * Only the properties the animation actually changes are touched, so property animators running
+ * on the others, like the rotation of the menu icon, are left alone. They are restored when the
+ * animation ends or is cancelled.
+ */
+final class AnimationPlayer extends AnimatorListenerAdapter implements ValueAnimator.AnimatorUpdateListener {
+
+    private static final int RESTORE_LAYER_NONE = -1;
+
+    private static final int SCALE = 1;
+    private static final int ROTATION = 1 << 1;
+    private static final int TRANSLATION = 1 << 2;
+    private static final int ALPHA = 1 << 3;
+
+    private final View mView;
+    private final ValueAnimator mAnimator;
+    private final Transformation mTransformation = new Transformation();
+    private final float[] mValues = new float[9];
+    private Animation mAnimation;
+    private Runnable mEndAction;
+    private long mDuration;
+    private int mRestoreLayerType = RESTORE_LAYER_NONE;
+    private int mAppliedProperties;
+    private float mScaleX;
+    private float mScaleY;
+    private float mRotation;
+    private float mTranslationX;
+    private float mTranslationY;
+    private float mAlpha;
+
+    AnimationPlayer(View view) {
+        mView = view;
+        mAnimator = ValueAnimator.ofFloat(0f, 1f);
+        // The animation applies its own interpolator to the sampled time
+        mAnimator.setInterpolator(new LinearInterpolator());
+        mAnimator.addUpdateListener(this);
+        mAnimator.addListener(this);
+    }
+
+    boolean isRunning() {
+        return mAnimation != null;
+    }
+
+    /**
+     * Keeps the view on the hardware layer the running animation moved it to once the animation
+     * ends. The caller becomes responsible for removing the layer.
+     *
+     * @return true if the view had no layer before the animation, false if there is nothing to
+     * hand over
+     */
+    boolean handOverLayer() {
+        if (mRestoreLayerType != View.LAYER_TYPE_NONE) return false;
+
+        mRestoreLayerType = RESTORE_LAYER_NONE;
+        return true;
+    }
+
+    /**
+     * Cancels the running animation and starts the given one.
+     *
+     * @param endAction run when the animation ends or is cancelled, may be null
+     */
+    void play(Animation animation, Runnable endAction) {
+        cancel();
+        if (animation == null) {
+            if (endAction != null) {
+                endAction.run();
+            }
+            return;
+        }
+
+        View parent = (View) mView.getParent();
+        animation.reset();
+        animation.initialize(mView.getWidth(), mView.getHeight(),
+                parent != null ? parent.getWidth() : 0, parent != null ? parent.getHeight() : 0);
+        animation.setStartTime(0);
+
+        mAnimation = animation;
+        mEndAction = endAction;
+        mDuration = animation.computeDurationHint();
+
+        mScaleX = mView.getScaleX();
+        mScaleY = mView.getScaleY();
+        mRotation = mView.getRotation();
+        mTranslationX = mView.getTranslationX();
+        mTranslationY = mView.getTranslationY();
+        mAlpha = mView.getAlpha();
+        mAppliedProperties = 0;
+        if (mView.getLayerType() != View.LAYER_TYPE_HARDWARE) {
+            mRestoreLayerType = mView.getLayerType();
+            mView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+
+        // Applied right away so the view does not show its final state for a frame
+        apply(0);
+        mAnimator.setDuration(mDuration);
+        mAnimator.start();
+    }
+
+    /**
+     * Stops the running animation, notifies its listener and runs the pending end action.
+     */
+    void cancel() {
+        if (mAnimation != null) {
+            mAnimator.cancel();
+        }
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animator) {
+        if (mAnimation != null) {
+            apply(Math.min(animator.getCurrentPlayTime(), mDuration));
+        }
+    }
+
+    @Override
+    public void onAnimationEnd(Animator animator) {
+        Animation animation = mAnimation;
+        if (animation == null) return;
+
+        mAnimation = null;
+        // Notifies the listener of the animation if it did not finish
+        animation.cancel();
+        restore();
+
+        Runnable endAction = mEndAction;
+        mEndAction = null;
+        if (endAction != null) {
+            endAction.run();
+        }
+    }
+
+    private void apply(long time) {
+        mTransformation.clear();
+        mAnimation.getTransformation(time, mTransformation);
+        // The listener of the animation may have cancelled it when it ended
+        if (mAnimation == null) return;
+
+        Matrix matrix = mTransformation.getMatrix();
+        matrix.getValues(mValues);
+        float a = mValues[Matrix.MSCALE_X];
+        float b = mValues[Matrix.MSKEW_X];
+        float c = mValues[Matrix.MSKEW_Y];
+        float d = mValues[Matrix.MSCALE_Y];
+
+        // The matrix works around the origin of the view, its properties around the pivot
+        float pivotX = mView.getPivotX();
+        float pivotY = mView.getPivotY();
+        float scaleX = (float) Math.hypot(a, c);
+        float scaleY = (float) Math.hypot(b, d);
+        float rotation = (float) Math.toDegrees(Math.atan2(c, a));
+        float translationX = mValues[Matrix.MTRANS_X] - pivotX + a * pivotX + b * pivotY;
+        float translationY = mValues[Matrix.MTRANS_Y] - pivotY + c * pivotX + d * pivotY;
+        float alpha = mTransformation.getAlpha();
+
+        if (touches(SCALE, scaleX != 1f || scaleY != 1f)) {
+            mView.setScaleX(mScaleX * scaleX);
+            mView.setScaleY(mScaleY * scaleY);
+        }
+        if (touches(ROTATION, rotation != 0f)) {
+            mView.setRotation(mRotation + rotation);
+        }
+        if (touches(TRANSLATION, translationX != 0f || translationY != 0f)) {
+            mView.setTranslationX(mTranslationX + translationX);
+            mView.setTranslationY(mTranslationY + translationY);
+        }
+        if (touches(ALPHA, alpha != 1f)) {
+            mView.setAlpha(mAlpha * alpha);
+        }
+    }
+
+    /**
+     * A property is touched from the first frame the animation changes it on.
+     */
+    private boolean touches(int property, boolean changed) {
+        if (changed) {
+            mAppliedProperties |= property;
+        }
+        return (mAppliedProperties & property) != 0;
+    }
+
+    private void restore() {
+        if ((mAppliedProperties & SCALE) != 0) {
+            mView.setScaleX(mScaleX);
+            mView.setScaleY(mScaleY);
+        }
+        if ((mAppliedProperties & ROTATION) != 0) {
+            mView.setRotation(mRotation);
+        }
+        if ((mAppliedProperties & TRANSLATION) != 0) {
+            mView.setTranslationX(mTranslationX);
+            mView.setTranslationY(mTranslationY);
+        }
+        if ((mAppliedProperties & ALPHA) != 0) {
+            mView.setAlpha(mAlpha);
+        }
+        mAppliedProperties = 0;
+        if (mRestoreLayerType != RESTORE_LAYER_NONE) {
+            mView.setLayerType(mRestoreLayerType, null);
+            mRestoreLayerType = RESTORE_LAYER_NONE;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.TypedValue;
+import android.util.Xml;
+import android.view.animation.AlphaAnimation;
+import android.view.animation.Animation;
+import android.view.animation.AnimationSet;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
+import android.view.animation.RotateAnimation;
+import android.view.animation.ScaleAnimation;
+import android.view.animation.TranslateAnimation;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Process-wide cache of parsed view animations, keyed by resource id and configuration.
+ * <p>
+ * An animation resource is parsed once into an immutable template, and every view gets a new
+ * {@link Animation} built from it, so buttons and labels do not parse the same XML again and
+ * again while a layout is inflated. Templates cover {@code set}, {@code alpha}, {@code scale},
+ * {@code rotate} and {@code translate} with the common attributes. Anything else, e.g. theme
+ * attributes or custom animation classes, is loaded with {@link AnimationUtils} as before.
+ */
+final class AnimationTemplates {
+
+    private static final int[] ATTRS = sorted(
+            android.R.attr.duration,
+            android.R.attr.startOffset,
+            android.R.attr.fillEnabled,
+            android.R.attr.fillBefore,
+            android.R.attr.fillAfter,
+            android.R.attr.repeatCount,
+            android.R.attr.repeatMode,
+            android.R.attr.zAdjustment,
+            android.R.attr.interpolator,
+            android.R.attr.shareInterpolator,
+            android.R.attr.fromAlpha,
+            android.R.attr.toAlpha,
+            android.R.attr.fromXScale,
+            android.R.attr.toXScale,
+            android.R.attr.fromYScale,
+            android.R.attr.toYScale,
+            android.R.attr.pivotX,
+            android.R.attr.pivotY,
+            android.R.attr.fromXDelta,
+            android.R.attr.toXDelta,
+            android.R.attr.fromYDelta,
+            android.R.attr.toYDelta,
+            android.R.attr.fromDegrees,
+            android.R.attr.toDegrees
+    );
+    private static final int DURATION = index(android.R.attr.duration);
+    private static final int START_OFFSET = index(android.R.attr.startOffset);
+    private static final int FILL_ENABLED = index(android.R.attr.fillEnabled);
+    private static final int FILL_BEFORE = index(android.R.attr.fillBefore);
+    private static final int FILL_AFTER = index(android.R.attr.fillAfter);
+    private static final int REPEAT_COUNT = index(android.R.attr.repeatCount);
+    private static final int REPEAT_MODE = index(android.R.attr.repeatMode);
+    private static final int Z_ADJUSTMENT = index(android.R.attr.zAdjustment);
+    private static final int INTERPOLATOR = index(android.R.attr.interpolator);
+    private static final int SHARE_INTERPOLATOR = index(android.R.attr.shareInterpolator);
+    private static final int FROM_ALPHA = index(android.R.attr.fromAlpha);
+    private static final int TO_ALPHA = index(android.R.attr.toAlpha);
+    private static final int FROM_X_SCALE = index(android.R.attr.fromXScale);
+    private static final int TO_X_SCALE = index(android.R.attr.toXScale);
+    private static final int FROM_Y_SCALE = index(android.R.attr.fromYScale);
+    private static final int TO_Y_SCALE = index(android.R.attr.toYScale);
+    private static final int PIVOT_X = index(android.R.attr.pivotX);
+    private static final int PIVOT_Y = index(android.R.attr.pivotY);
+    private static final int FROM_X_DELTA = index(android.R.attr.fromXDelta);
+    private static final int TO_X_DELTA = index(android.R.attr.toXDelta);
+    private static final int FROM_Y_DELTA = index(android.R.attr.fromYDelta);
+    private static final int TO_Y_DELTA = index(android.R.attr.toYDelta);
+    private static final int FROM_DEGREES = index(android.R.attr.fromDegrees);
+    private static final int TO_DEGREES = index(android.R.attr.toDegrees);
+
+    /**
+     * Cached for resources the templates cannot describe, so they are not parsed twice.
+     */
+    private static final Template UNSUPPORTED = new Template("", new TypedValue[0], null);
+
+    private static final Object sLock = new Object();
+    private static final SparseArray<Entry> sEntries = new SparseArray<>();
+
+    private AnimationTemplates() {
+    }
+
+    /**
+     * Returns a new animation for the given resource, parsing the resource only if there is no
+     * template for it and the current configuration yet.
+     */
+    static Animation load(Context context, int id) {
+        Resources res = context.getResources();
+        Configuration configuration = res.getConfiguration();
+        Template template;
+        synchronized (sLock) {
+            Entry entry = sEntries.get(id);
+            template = entry != null && entry.mConfiguration.equals(configuration) ? entry.mTemplate : null;
+        }
+
+        if (template == null) {
+            template = parse(context, id);
+            synchronized (sLock) {
+                sEntries.put(id, new Entry(new Configuration(configuration), template));
+            }
+        }
+
+        if (template == UNSUPPORTED) {
+            return AnimationUtils.loadAnimation(context, id);
+        }
+        return template.create();
+    }
+
+    private static Template parse(Context context, int id) {
+        XmlResourceParser parser = context.getResources().getAnimation(id);
+        try {
+            return parse(context, parser, Xml.asAttributeSet(parser), null);
+        } catch (XmlPullParserException | IOException | UnsupportedOperationException e) {
+            return UNSUPPORTED;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Follows {@link AnimationUtils#loadAnimation(Context, int)}: children of a set are added to
+     * it, the last element on the top level is the animation.
+     */
+    private static Template parse(Context context, XmlPullParser parser, AttributeSet attrs,
+                                  Template parent) throws XmlPullParserException, IOException {
+        Template template = null;
+        int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth)
+                && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) continue;
+
+            template = createTemplate(context, parser.getName(), attrs);
+            if (template.isSet()) {
+                parse(context, parser, attrs, template);
+            }
+            if (parent != null) {
+                parent.mChildren.add(template);
+            }
+        }
+
+        if (template == null) {
+            throw new XmlPullParserException("No animation in resource");
+        }
+        return template;
+    }
+
+    private static Template createTemplate(Context context, String name, AttributeSet attrs) {
+        if (!"set".equals(name) && !"alpha".equals(name) && !"scale".equals(name)
+                && !"rotate".equals(name) && !"translate".equals(name)) {
+            throw new UnsupportedOperationException(name);
+        }
+        for (int i = 0; i < attrs.getAttributeCount(); i++) {
+            if (Arrays.binarySearch(ATTRS, attrs.getAttributeNameResource(i)) < 0) {
+                throw new UnsupportedOperationException(attrs.getAttributeName(i));
+            }
+        }
+
+        TypedArray a = context.getResources().obtainAttributes(attrs, ATTRS);
+        try {
+            TypedValue[] values = new TypedValue[ATTRS.length];
+            for (int i = 0; i < ATTRS.length; i++) {
+                TypedValue value = new TypedValue();
+                if (a.getValue(i, value)) {
+                    if (value.type == TypedValue.TYPE_ATTRIBUTE) {
+                        // Theme attributes depend on the context, not only on the resource
+                        throw new UnsupportedOperationException(attrs.getAttributeName(i));
+                    }
+                    values[i] = value;
+                }
+            }
+
+            Interpolator interpolator = null;
+            int interpolatorId = a.getResourceId(INTERPOLATOR, 0);
+            if (interpolatorId != 0) {
+                // Interpolators are stateless, every animation from the template shares it
+                interpolator = AnimationUtils.loadInterpolator(context, interpolatorId);
+            }
+
+            Template template = new Template(name, values, interpolator);
+            template.resolve(context.getResources());
+            return template;
+        } finally {
+            a.recycle();
+        }
+    }
+
+    private static int[] sorted(int... attrs) {
+        Arrays.sort(attrs);
+        return attrs;
+    }
+
+    private static int index(int attr) {
+        return Arrays.binarySearch(ATTRS, attr);
+    }
+
+    private static final class Entry {
+
+        private final Configuration mConfiguration;
+        private final Template mTemplate;
+
+        private Entry(Configuration configuration, Template template) {
+            mConfiguration = configuration;
+            mTemplate = template;
+        }
+    }
+
+    /**
+     * Parsed attributes of one animation element. Positions and pivots are resolved into a
+     * {@link Animation} value type and value, the way {@code Animation.Description} does it.
+     */
+    private static final class Template {
+
+        private final String mName;
+        private final TypedValue[] mValues;
+        private final Interpolator mInterpolator;
+        private final List<Template> mChildren = new ArrayList<>();
+        private final int[] mTypes = new int[ATTRS.length];
+        private final float[] mFloats = new float[ATTRS.length];
+
+        private Template(String name, TypedValue[] values, Interpolator interpolator) {
+            mName = name;
+            mValues = values;
+            mInterpolator = interpolator;
+        }
+
+        private boolean isSet() {
+            return "set".equals(mName);
+        }
+
+        private void resolve(Resources res) {
+            resolveFloat(FROM_ALPHA, 1f);
+            resolveFloat(TO_ALPHA, 1f);
+            resolveFloat(FROM_X_SCALE, 0f);
+            resolveFloat(TO_X_SCALE, 0f);
+            resolveFloat(FROM_Y_SCALE, 0f);
+            resolveFloat(TO_Y_SCALE, 0f);
+            resolveFloat(FROM_DEGREES, 0f);
+            resolveFloat(TO_DEGREES, 0f);
+            resolvePosition(PIVOT_X, res);
+            resolvePosition(PIVOT_Y, res);
+            resolvePosition(FROM_X_DELTA, res);
+            resolvePosition(TO_X_DELTA, res);
+            resolvePosition(FROM_Y_DELTA, res);
+            resolvePosition(TO_Y_DELTA, res);
+        }
+
+        private void resolveFloat(int index, float defaultValue) {
+            TypedValue value = mValues[index];
+            if (value == null) {
+                mFloats[index] = defaultValue;
+            } else if (value.type == TypedValue.TYPE_FLOAT) {
+                mFloats[index] = value.getFloat();
+            } else if (value.type >= TypedValue.TYPE_FIRST_INT && value.type <= TypedValue.TYPE_LAST_INT) {
+                mFloats[index] = value.data;
+            } else {
+                // e.g. scales given as fractions, which are resolved against the view size
+                throw new UnsupportedOperationException();
+            }
+        }
+
+        private void resolvePosition(int index, Resources res) {
+            TypedValue value = mValues[index];
+            mTypes[index] = Animation.ABSOLUTE;
+            if (value == null) {
+                mFloats[index] = 0f;
+            } else if (value.type == TypedValue.TYPE_FRACTION) {
+                mTypes[index] = (value.data & TypedValue.COMPLEX_UNIT_MASK) == TypedValue.COMPLEX_UNIT_FRACTION_PARENT
+                        ? Animation.RELATIVE_TO_PARENT : Animation.RELATIVE_TO_SELF;
+                mFloats[index] = TypedValue.complexToFloat(value.data);
+            } else if (value.type == TypedValue.TYPE_DIMENSION) {
+                mFloats[index] = TypedValue.complexToDimension(value.data, res.getDisplayMetrics());
+            } else {
+                resolveFloat(index, 0f);
+            }
+        }
+
+        private Animation create() {
+            Animation animation;
+            if (isSet()) {
+                TypedValue share = mValues[SHARE_INTERPOLATOR];
+                AnimationSet set = new AnimationSet(share == null || share.data != 0);
+                for (Template child : mChildren) {
+                    set.addAnimation(child.create());
+                }
+                animation = set;
+            } else if ("alpha".equals(mName)) {
+                animation = new AlphaAnimation(mFloats[FROM_ALPHA], mFloats[TO_ALPHA]);
+            } else if ("scale".equals(mName)) {
+                animation = new ScaleAnimation(
+                        mFloats[FROM_X_SCALE], mFloats[TO_X_SCALE],
+                        mFloats[FROM_Y_SCALE], mFloats[TO_Y_SCALE],
+                        mTypes[PIVOT_X], mFloats[PIVOT_X],
+                        mTypes[PIVOT_Y], mFloats[PIVOT_Y]);
+            } else if ("rotate".equals(mName)) {
+                animation = new RotateAnimation(
+                        mFloats[FROM_DEGREES], mFloats[TO_DEGREES],
+                        mTypes[PIVOT_X], mFloats[PIVOT_X],
+                        mTypes[PIVOT_Y], mFloats[PIVOT_Y]);
+            } else {
+                animation = new TranslateAnimation(
+                        mTypes[FROM_X_DELTA], mFloats[FROM_X_DELTA],
+                        mTypes[TO_X_DELTA], mFloats[TO_X_DELTA],
+                        mTypes[FROM_Y_DELTA], mFloats[FROM_Y_DELTA],
+                        mTypes[TO_Y_DELTA], mFloats[TO_Y_DELTA]);
+            }
+
+            // Like the XML constructors, a set only passes on the attributes it declares
+            if (mValues[DURATION] != null) {
+                animation.setDuration(mValues[DURATION].data);
+            }
+            if (mValues[START_OFFSET] != null) {
+                animation.setStartOffset(mValues[START_OFFSET].data);
+            }
+            if (mValues[FILL_ENABLED] != null) {
+                animation.setFillEnabled(mValues[FILL_ENABLED].data != 0);
+            }
+            if (mValues[FILL_BEFORE] != null) {
+                animation.setFillBefore(mValues[FILL_BEFORE].data != 0);
+            }
+            if (mValues[FILL_AFTER] != null) {
+                animation.setFillAfter(mValues[FILL_AFTER].data != 0);
+            }
+            if (mValues[REPEAT_COUNT] != null) {
+                animation.setRepeatCount(mValues[REPEAT_COUNT].data);
+            }
+            if (mValues[REPEAT_MODE] != null) {
+                animation.setRepeatMode(mValues[REPEAT_MODE].data);
+            }
+            if (mValues[Z_ADJUSTMENT] != null) {
+                animation.setZAdjustment(mValues[Z_ADJUSTMENT].data);
+            }
+            if (mInterpolator != null) {
+                animation.setInterpolator(mInterpolator);
+            }
+            return animation;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.clans.fab;
+
+import android.view.View;
+
+/**
+ * Batches background rebuilds of a view.
+ * <p>
+ * Appearance setters call {@link #schedule()}, which marks the background dirty and rebuilds it
+ * once before the next frame, so several setters called in a row cost a single rebuild. Between
+ * {@link #beginUpdate()} and the matching {@link #endUpdate()} nothing is rebuilt until the
+ * outermost batch ends. Calls can be nested.
+ */
+final class BackgroundUpdater implements Runnable {
+
+    private final View mView;
+    private final Runnable mUpdate;
+    private int mDepth;
+    private boolean mDirty;
+
+    /**
+     * @param update rebuilds the background of the view and calls {@link #clear()}
+     */
+    BackgroundUpdater(View view, Runnable update) {
+        mView = view;
+        mUpdate = update;
+    }
+
+    void beginUpdate() {
+        mDepth++;
+    }
+
+    void endUpdate() {
+        if (mDepth == 0) {
+            throw new IllegalStateException("endUpdate() called without a matching beginUpdate()");
+        }
+
+        if (--mDepth == 0 && mDirty) {
+            mView.removeCallbacks(this);
+            mUpdate.run();
+        }
+    }
+
+    void schedule() {
+        if (mView.isInEditMode()) {
+            mUpdate.run();
+            return;
+        }
+
+        if (mDirty) return;
+        mDirty = true;
+        if (mDepth > 0) return;
+
+        Util.postOnAnimation(mView, this);
+    }
+
+    /**
+     * Drops a pending rebuild, the view has just rebuilt its background.
+     */
+    void clear() {
+        mDirty = false;
+    }
+
+    @Override
+    public void run() {
+        if (mDirty && mDepth == 0) {
+            mUpdate.run();
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.github.clans.fab;
 
-import android.content.Context;
-import android.content.res.Configuration;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.RectF;
@@ -14,25 +12,25 @@ import android.graphics.drawable.shapes.RectShape;
  */
 
 public class ExtendedButtonShadowShape extends RectShape {
-    private Context mContext;
-    private float mButtonPadding;
-    private float mExtraLeftShadow = -3f;
-    private float mExtraTopShadow = -2f;
-    private float mRadius = 110f;
+    private static final float RADIUS = 110f;
 
-    ExtendedButtonShadowShape(Context ctx) {
+    private final RectF mRect;
+
+    ExtendedButtonShadowShape(ExtendedGeometry geometry) {
         super();
-        mContext = ctx;
-        mButtonPadding = ctx.getResources().getDimensionPixelSize(R.dimen.extended_button_shadow_padding);
+        mRect = geometry.newShapeRect();
+    }
+
+    /**
+     * Corner radius the rounded rectangle is drawn with, the canvas limits it to half the
+     * height or width of the rectangle.
+     */
+    static float getCornerRadius(float width, float height) {
+        return Math.min(RADIUS, Math.min(width, height) / 2f);
     }
 
     @Override
     public void draw(Canvas canvas, Paint paint) {
-
-        if (mContext.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            canvas.drawRoundRect(new RectF(Util.dpToPx(mContext, mExtraLeftShadow), Util.dpToPx(mContext, mExtraTopShadow), Util.getScreenWidth(mContext) - mButtonPadding, Util.dpToPx(mContext, 56f)), mRadius, mRadius, paint);
-        } else {
-            canvas.drawRoundRect(new RectF(Util.dpToPx(mContext, mExtraLeftShadow), Util.dpToPx(mContext, mExtraTopShadow), Util.getExtendedButtonLandscapeWidth(mContext), Util.dpToPx(mContext, 56f)), mRadius, mRadius, paint);
-        }
+        canvas.drawRoundRect(mRect, RADIUS, RADIUS, paint);
     }
 }
@@ -5,15 +5,14 @@ import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Outline;
-import android.graphics.Paint;
 import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Xfermode;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
@@ -30,11 +29,12 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewOutlineProvider;
 import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
 import static android.R.attr.animation;
+import static com.github.clans.fab.FloatingActionButton.SHADOW_ENGINE_BITMAP;
+import static com.github.clans.fab.FloatingActionButton.SHADOW_ENGINE_ELEVATION;
 import static com.github.clans.fab.FloatingActionButton.SIZE_NORMAL;
 
 /**
@@ -45,7 +45,6 @@ import static com.github.clans.fab.FloatingActionButton.SIZE_NORMAL;
 
 public class ExtendedFloatingActionButton extends ImageButton {
 
-    private static final Xfermode PORTER_DUFF_CLEAR = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
     private static final long PAUSE_GROWING_TIME = 200;
     private static final double BAR_SPIN_CYCLE_TIME = 500;
     private static final int BAR_MAX_LENGTH = 270;
@@ -72,11 +71,14 @@ public class ExtendedFloatingActionButton extends ImageButton {
     private String mLabelText;
     private OnClickListener mClickListener;
     private Drawable mBackgroundDrawable;
+    private ExtendedLabel mLabel;
+    private int mLabelOffset = Integer.MIN_VALUE;
+    private ExtendedGeometry mGeometry;
     GestureDetector mGestureDetector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
 
         @Override
         public boolean onDown(MotionEvent e) {
-            ExtendedLabel label = (ExtendedLabel) getTag(R.id.fab_label);
+            ExtendedLabel label = mLabel;
             if (label != null) {
                 label.onActionDown();
             }
@@ -86,7 +88,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
 
         @Override
         public boolean onSingleTapUp(MotionEvent e) {
-            ExtendedLabel label = (ExtendedLabel) getTag(R.id.fab_label);
+            ExtendedLabel label = mLabel;
             if (label != null) {
                 label.onActionUp();
             }
@@ -96,6 +98,8 @@ public class ExtendedFloatingActionButton extends ImageButton {
     });
     private boolean mUsingElevation;
     private boolean mUsingElevationCompat;
+    private int mShadowEngine = SHADOW_ENGINE_BITMAP;
+    private BackgroundUpdater mBackgroundUpdater;
     private Handler uiHandler = new Handler();
 
     public ExtendedFloatingActionButton(Context context) {
@@ -160,7 +164,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
 
     private void initShowAnimation(TypedArray attr) {
         int resourceId = attr.getResourceId(R.styleable.FloatingActionButton_fab_showAnimation, R.anim.fab_scale_up);
-        mShowAnimation = AnimationUtils.loadAnimation(getContext(), resourceId);
+        mShowAnimation = AnimationTemplates.load(getContext(), resourceId);
         mShowAnimation.setAnimationListener(new Animation.AnimationListener() {
             @Override
             public void onAnimationStart(Animation animation) {
@@ -185,11 +189,11 @@ public class ExtendedFloatingActionButton extends ImageButton {
 
     private void initHideAnimation(TypedArray attr) {
         int resourceId = attr.getResourceId(R.styleable.FloatingActionButton_fab_hideAnimation, R.anim.fab_scale_down);
-        mHideAnimation = AnimationUtils.loadAnimation(getContext(), resourceId);
+        mHideAnimation = AnimationTemplates.load(getContext(), resourceId);
     }
 
     private void initHideExtendedAnimation() {
-        mHideExtendedAnimation = AnimationUtils.loadAnimation(getContext(), R.anim.fab_extended_hide);
+        mHideExtendedAnimation = AnimationTemplates.load(getContext(), R.anim.fab_extended_hide);
         mHideExtendedAnimation.setAnimationListener(new Animation.AnimationListener() {
             @Override
             public void onAnimationStart(Animation animation) {
@@ -213,47 +217,49 @@ public class ExtendedFloatingActionButton extends ImageButton {
     }
 
     private void initReplaceExtendedAnimation() {
-        mReplaceExtendedAnimation = AnimationUtils.loadAnimation(getContext(), R.anim.fab_extended_replace);
+        mReplaceExtendedAnimation = AnimationTemplates.load(getContext(), R.anim.fab_extended_replace);
     }
 
     protected int getCircleSize() {
-        return getResources().getDimensionPixelSize(mFabSize == SIZE_NORMAL
-                ? R.dimen.fab_size_normal : R.dimen.fab_size_mini);
+        return getGeometry().getCircleSize(mFabSize);
     }
 
-    private int getExtendedButtonPadding() {
-        return getResources().getDimensionPixelSize(R.dimen.extended_button_padding);
+    /**
+     * Dimensions of the current configuration. Taken lazily since the super constructor may
+     * already need them.
+     */
+    ExtendedGeometry getGeometry() {
+        if (mGeometry == null) {
+            mGeometry = ExtendedGeometry.obtain(getContext());
+        }
+        return mGeometry;
     }
 
-    private int getExtendedButtonLandscapeWidth() {
-        return getResources().getDimensionPixelSize(R.dimen.extended_button_width_landscape);
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        ExtendedGeometry geometry = ExtendedGeometry.obtain(getContext());
+        if (geometry != mGeometry) {
+            mGeometry = geometry;
+            requestLayout();
+            scheduleBackgroundUpdate();
+        }
     }
 
     protected int calculateMeasuredWidth() {
-        int width;
-
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            width = Util.getScreenWidth(getContext()) - getExtendedButtonPadding() + calculateShadowWidth();
-        } else {
-            width = getExtendedButtonLandscapeWidth() + calculateShadowWidth();
-        }
-        return width;
+        return getGeometry().buttonWidth + calculateShadowWidth();
     }
 
     public int calculateMeasuredWidthPortrait() {
-        return Util.getScreenWidth(getContext()) - getExtendedButtonPadding() + calculateShadowWidth();
+        return getGeometry().portraitButtonWidth + calculateShadowWidth();
     }
 
     public int calculateMeasuredWidthLandscape() {
-        return getExtendedButtonLandscapeWidth() + calculateShadowWidth();
+        return getGeometry().landscapeButtonWidth + calculateShadowWidth();
     }
 
     public int calculateMeasuredWidthAuto() {
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            return Util.getScreenWidth(getContext()) - getExtendedButtonPadding() + calculateShadowWidth();
-        } else {
-            return getExtendedButtonLandscapeWidth() + calculateShadowWidth();
-        }
+        return calculateMeasuredWidth();
     }
 
     protected int calculateMeasuredHeight() {
@@ -308,6 +314,10 @@ public class ExtendedFloatingActionButton extends ImageButton {
     }
 
     void updateBackground() {
+        if (mBackgroundUpdater != null) {
+            mBackgroundUpdater.clear();
+        }
+
         LayerDrawable layerDrawable;
         int iconOffsetVertical = 0;
         int iconOffsetLeft = 0;
@@ -334,7 +344,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
         int extraLeftOffset = 0;
 
         if (getLabelView() != null) {
-            extraLeftOffset = Math.round(((getX() + calculateMeasuredWidth() / 2) - getLabelView().getX()) + getResources().getDimensionPixelSize(R.dimen.extended_button_gap_between_icon_text) / 3); // Align icon on the left side of label text
+            extraLeftOffset = Math.round(((getX() + calculateMeasuredWidth() / 2) - getLabelView().getX()) + getGeometry().iconTextGap / 3); // Align icon on the left side of label text
         }
         iconOffsetVertical = (calculateMeasuredHeight() - (iconSize > 0 ? iconSize : mIconSize)) / 2;
         iconOffsetLeft = (calculateMeasuredWidth() - (iconSize > 0 ? iconSize : mIconSize)) / 2 - extraLeftOffset;
@@ -354,6 +364,39 @@ public class ExtendedFloatingActionButton extends ImageButton {
         setBackgroundCompat(layerDrawable);
     }
 
+    /**
+     * Starts a batch of appearance changes. Until the matching {@link #endUpdate()} call the
+     * background of the <b>ExtendedFloatingActionButton</b> is rebuilt at most once, when the outermost batch ends.
+     * Calls can be nested.
+     */
+    public void beginUpdate() {
+        getBackgroundUpdater().beginUpdate();
+    }
+
+    /**
+     * Ends a batch started by {@link #beginUpdate()} and applies the pending changes.
+     */
+    public void endUpdate() {
+        getBackgroundUpdater().endUpdate();
+    }
+
+    private void scheduleBackgroundUpdate() {
+        getBackgroundUpdater().schedule();
+    }
+
+    private BackgroundUpdater getBackgroundUpdater() {
+        // Created lazily since the super constructor already calls the setters
+        if (mBackgroundUpdater == null) {
+            mBackgroundUpdater = new BackgroundUpdater(this, new Runnable() {
+                @Override
+                public void run() {
+                    updateBackground();
+                }
+            });
+        }
+        return mBackgroundUpdater;
+    }
+
     protected Drawable getIconDrawable() {
         if (mIcon != null) {
             return mIcon;
@@ -374,15 +417,17 @@ public class ExtendedFloatingActionButton extends ImageButton {
                     new int[]{mColorRipple}), drawable, null);
 
             setOutlineProvider(new ViewOutlineProvider() {
-                int extraShadowSpace = 5;
-
                 @Override
                 public void getOutline(View view, Outline outline) {
-                    if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-                        outline.setRoundRect(0, -8, Util.getScreenWidth(getContext()) - (getExtendedButtonPadding() - Util.dpToPx(getContext(), extraShadowSpace)), Util.dpToPx(getContext(), 70f), 25f);
-
+                    ExtendedGeometry geometry = getGeometry();
+                    if (isUsingOutlineShadow()) {
+                        // Matches the fill drawn by ExtendedButtonShadowShape
+                        outline.setRoundRect(Math.round(geometry.shapeLeft), Math.round(geometry.shapeTop),
+                                Math.round(geometry.shapeRight), Math.round(geometry.shapeBottom),
+                                ExtendedButtonShadowShape.getCornerRadius(geometry.shapeRight - geometry.shapeLeft,
+                                        geometry.shapeBottom - geometry.shapeTop));
                     } else {
-                        outline.setRoundRect(0, -8, getExtendedButtonLandscapeWidth() + Util.dpToPx(getContext(), extraShadowSpace), Util.dpToPx(getContext(), 70f), 25f);
+                        outline.setRoundRect(0, -8, geometry.outlineWidth, geometry.outlineCompatHeight, 25f);
                     }
                 }
             });
@@ -398,7 +443,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
 
     private Drawable createCircleDrawable(int color) {
         CircleDrawable shapeDrawable;
-        shapeDrawable = new CircleDrawable(new ExtendedButtonShadowShape(getContext()));
+        shapeDrawable = new CircleDrawable(new ExtendedButtonShadowShape(getGeometry()));
         shapeDrawable.getPaint().setColor(color);
         return shapeDrawable;
     }
@@ -452,7 +497,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setOnClickListener(final OnClickListener l) {
         super.setOnClickListener(l);
         mClickListener = l;
-        View label = (View) getTag(R.id.fab_label);
+        View label = mLabel;
         if (label != null) {
             label.setOnClickListener(new OnClickListener() {
                 @Override
@@ -466,7 +511,24 @@ public class ExtendedFloatingActionButton extends ImageButton {
     }
 
     ExtendedLabel getLabelView() {
-        return (ExtendedLabel) getTag(R.id.fab_label);
+        return mLabel;
+    }
+
+    void setLabelView(ExtendedLabel label) {
+        mLabel = label;
+        // Kept for code that still looks the label up through the tag
+        setTag(R.id.fab_label, label);
+    }
+
+    /**
+     * Called by the menu on measure with the position of the label relative to the button. The
+     * icon is aligned with the label text, so the background is rebuilt only when it moved.
+     */
+    void setLabelOffset(int offset) {
+        if (mLabelOffset != offset) {
+            mLabelOffset = offset;
+            scheduleBackgroundUpdate();
+        }
     }
 
     void setColors(int colorNormal, int colorPressed, int colorRipple) {
@@ -504,7 +566,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (mClickListener != null && isEnabled()) {
-            ExtendedLabel label = (ExtendedLabel) getTag(R.id.fab_label);
+            ExtendedLabel label = mLabel;
             if (label == null) return super.onTouchEvent(event);
 
             int action = event.getAction();
@@ -534,7 +596,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setImageDrawable(Drawable drawable) {
         if (mIcon != drawable) {
             mIcon = drawable;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -543,7 +605,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
         Drawable drawable = getResources().getDrawable(resId);
         if (mIcon != drawable) {
             mIcon = drawable;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -562,7 +624,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setColorNormal(int color) {
         if (mColorNormal != color) {
             mColorNormal = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -577,7 +639,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setColorPressed(int color) {
         if (color != mColorPressed) {
             mColorPressed = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -592,7 +654,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setColorRipple(int color) {
         if (color != mColorRipple) {
             mColorRipple = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -607,19 +669,58 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setColorDisabled(int color) {
         if (color != mColorDisabled) {
             mColorDisabled = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
     public void setShowShadow(boolean show) {
         if (mShowShadow != show) {
             mShowShadow = show;
-            updateBackground();
+            updateOutlineShadow();
+            scheduleBackgroundUpdate();
         }
     }
 
     public boolean hasShadow() {
-        return !mUsingElevation && mShowShadow;
+        return !mUsingElevation && !isUsingOutlineShadow() && mShowShadow;
+    }
+
+    public int getShadowEngine() {
+        return mShadowEngine;
+    }
+
+    /**
+     * Sets how the shadow of the <b>ExtendedFloatingActionButton</b> is drawn and invalidates its layout.
+     * <p>
+     * <b>API 21+</b>: {@link FloatingActionButton#SHADOW_ENGINE_ELEVATION} uses the native elevation
+     * with a rounded rectangle outline so the shadow is drawn by the render thread. On older
+     * platforms the button falls back to the cached shadow bitmap.
+     *
+     * @param engine Accepted values: SHADOW_ENGINE_BITMAP, SHADOW_ENGINE_ELEVATION.
+     */
+    public void setShadowEngine(int engine) {
+        if (engine != SHADOW_ENGINE_BITMAP && engine != SHADOW_ENGINE_ELEVATION) {
+            throw new IllegalArgumentException("Use SHADOW_ENGINE constants only!");
+        }
+
+        if (mShadowEngine != engine) {
+            mShadowEngine = engine;
+            updateOutlineShadow();
+            requestLayout();
+            scheduleBackgroundUpdate();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateOutlineShadow() {
+        if (Util.hasLollipop() && !mUsingElevation && !mUsingElevationCompat) {
+            super.setElevation(isUsingOutlineShadow()
+                    ? Math.max(mShadowRadius, Math.abs(mShadowYOffset)) : 0);
+        }
+    }
+
+    private boolean isUsingOutlineShadow() {
+        return mShadowEngine == SHADOW_ENGINE_ELEVATION && Util.hasLollipop() && mShowShadow;
     }
 
     /**
@@ -632,7 +733,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
         if (mShadowRadius != shadowRadius) {
             mShadowRadius = shadowRadius;
             requestLayout();
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -651,7 +752,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setShadowRadius(float shadowRadiusDp) {
         mShadowRadius = Util.dpToPx(getContext(), shadowRadiusDp);
         requestLayout();
-        updateBackground();
+        scheduleBackgroundUpdate();
     }
 
     /**
@@ -664,7 +765,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
         if (mShadowXOffset != shadowXOffset) {
             mShadowXOffset = shadowXOffset;
             requestLayout();
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -683,7 +784,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setShadowXOffset(float shadowXOffsetDp) {
         mShadowXOffset = Util.dpToPx(getContext(), shadowXOffsetDp);
         requestLayout();
-        updateBackground();
+        scheduleBackgroundUpdate();
     }
 
     /**
@@ -696,7 +797,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
         if (mShadowYOffset != shadowYOffset) {
             mShadowYOffset = shadowYOffset;
             requestLayout();
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -715,14 +816,14 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setShadowYOffset(float shadowYOffsetDp) {
         mShadowYOffset = Util.dpToPx(getContext(), shadowYOffsetDp);
         requestLayout();
-        updateBackground();
+        scheduleBackgroundUpdate();
     }
 
     public void setShadowColorResource(int colorResId) {
         int shadowColor = getResources().getColor(colorResId);
         if (mShadowColor != shadowColor) {
             mShadowColor = shadowColor;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -733,7 +834,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     public void setShadowColor(int color) {
         if (mShadowColor != color) {
             mShadowColor = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -855,7 +956,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     @Override
     public void setEnabled(boolean enabled) {
         super.setEnabled(enabled);
-        ExtendedLabel label = (ExtendedLabel) getTag(R.id.fab_label);
+        ExtendedLabel label = mLabel;
         if (label != null) {
             label.setEnabled(enabled);
         }
@@ -864,7 +965,7 @@ public class ExtendedFloatingActionButton extends ImageButton {
     @Override
     public void setVisibility(int visibility) {
         super.setVisibility(visibility);
-        ExtendedLabel label = (ExtendedLabel) getTag(R.id.fab_label);
+        ExtendedLabel label = mLabel;
         if (label != null) {
             label.setVisibility(visibility);
         }
@@ -970,39 +1071,46 @@ public class ExtendedFloatingActionButton extends ImageButton {
         }
     }
 
-    private class Shadow extends Drawable {
+    private class Shadow extends Drawable implements ShadowCache.Listener {
+
+        private static final int CORNER_RADIUS = 70;
 
-        private Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private Paint mErase = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private float mRadius;
+        private final Rect mSrc = new Rect();
+        private final RectF mDst = new RectF();
+        private ShadowCache.RoundRectKey mKey;
+        private Bitmap mBitmap;
+        private float mLeft;
+        private float mTop;
+        private float mRight;
+        private float mBottom;
 
         private Shadow() {
             this.init();
         }
 
         private void init() {
-            setLayerType(LAYER_TYPE_SOFTWARE, null);
-            mPaint.setStyle(Paint.Style.FILL);
-            mPaint.setColor(mColorNormal);
-            mErase.setXfermode(PORTER_DUFF_CLEAR);
-            mPaint.setShadowLayer(mShadowRadius, mShadowXOffset, mShadowYOffset, mShadowColor);
-            mRadius = getCircleSize() / 2;
+            ExtendedGeometry geometry = getGeometry();
+            mLeft = geometry.shadowLeft;
+            mTop = geometry.shadowTop;
+            mRight = geometry.shadowRight;
+            mBottom = geometry.shadowBottom;
+
+            mKey = new ShadowCache.RoundRectKey(CORNER_RADIUS, Math.round(mBottom - mTop), mShadowRadius,
+                    mShadowXOffset, mShadowYOffset, mShadowColor, geometry.density);
+            mBitmap = isInEditMode() ? ShadowCache.getNow(mKey) : ShadowCache.get(mKey, this);
         }
 
         @Override
-        public void draw(Canvas canvas) {
-            drawRoundRectangleCanvas(canvas, mPaint);
-            drawRoundRectangleCanvas(canvas, mErase);
+        public void onShadowReady(Bitmap bitmap) {
+            mBitmap = bitmap;
+            invalidateSelf();
         }
 
-        private void drawRoundRectangleCanvas(Canvas canvas, Paint paint) {
-            float canvasXOffset = Util.dpToPx(getContext(), 6f);  // We need shadow to has same width as button.
-            float canvasYOffset = Util.dpToPx(getContext(), 18);  // We need shadow to be located little bit lower.
-            if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-                canvas.drawRoundRect(new RectF(canvasXOffset, canvasYOffset, Util.getScreenWidth(getContext()) - (getExtendedButtonPadding() + Util.dpToPx(getContext(), 7f)), Util.dpToPx(getContext(), 60f)), 70f, 70f, paint);
-            } else {
-                canvas.drawRoundRect(new RectF(canvasXOffset, canvasYOffset, getExtendedButtonLandscapeWidth() - canvasXOffset, Util.dpToPx(getContext(), 60f)), 70f, 70f, paint);
-            }
+        @Override
+        public void draw(Canvas canvas) {
+            if (mBitmap == null) return;
+
+            ShadowCache.drawRoundRectShadow(canvas, mBitmap, mKey, mLeft, mTop, mRight, mBottom, mSrc, mDst);
         }
 
         @Override
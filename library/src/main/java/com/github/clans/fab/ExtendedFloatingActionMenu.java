@@ -2,7 +2,7 @@ package com.github.clans.fab;
 
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.Configuration;
@@ -10,7 +10,7 @@ import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
-import android.os.Handler;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.TypedValue;
@@ -19,7 +19,6 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.view.animation.AnticipateInterpolator;
 import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
@@ -47,6 +46,10 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     private static final int OPEN_UP = 0;
 
     private static final int LABELS_POSITION_LEFT = 0;
+    private static final int PENDING_HIDE_NONE = 0;
+    private static final int PENDING_HIDE_MENU = 1;
+    private static final int PENDING_HIDE_MENU_BUTTON = 2;
+    private static final float LABEL_WHITE_SPACE_PERCENTAGE = 1.6f;
     private AnimatorSet mOpenAnimatorSet = new AnimatorSet();
     private AnimatorSet mCloseAnimatorSet = new AnimatorSet();
     private AnimatorSet mIconToggleSet;
@@ -56,13 +59,61 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     private int mExtendedButtonBackgroundColor;
     private int mExtendedButtonTextSize = 0;
     private int mButtonSpacing = Util.dpToPx(getContext(), 0f);
+    private ExtendedGeometry mGeometry;
     private int mMaxButtonWidth;
     private int mLabelsMargin = Util.dpToPx(getContext(), 0f);
     private int mLabelsVerticalOffset = Util.dpToPx(getContext(), 0f);
     private int mButtonsCount;
+    private ExtendedLabel[] mLabels = new ExtendedLabel[0];
     private boolean mMenuOpened;
     private boolean mIsMenuOpening;
-    private Handler mUiHandler = new Handler();
+    private int mPendingHide = PENDING_HIDE_NONE;
+    private boolean mPendingHideAnimate;
+    private final MenuTimeline mTimeline = new MenuTimeline(new MenuTimeline.Host() {
+        @Override
+        public int getTimelineStepCount() {
+            int count = 0;
+            for (int i = 0; i < getChildCount(); i++) {
+                View child = getChildAt(i);
+                if (child instanceof ExtendedFloatingActionButton && child.getVisibility() != GONE) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void onTimelineStep(int position, boolean show, boolean animate) {
+            ExtendedFloatingActionButton fab = getTimelineButton(position);
+            if (fab == null) return;
+
+            ExtendedLabel label = fab.getLabelView();
+            if (show) {
+                if (fab != mMenuButton) {
+                    fab.show(animate);
+                }
+                if (label != null && label.isHandleVisibilityChanges() && fab != mMenuButton) {
+                    label.show();
+                }
+            } else {
+                if (fab != mMenuButton) {
+                    fab.hide(animate);
+                }
+                if (label != null && label.isHandleVisibilityChanges()) {
+                    label.hide();
+                }
+            }
+        }
+
+        @Override
+        public void onTimelineFinished(boolean opened) {
+            mMenuOpened = opened;
+            if (mToggleListener != null) {
+                mToggleListener.onMenuToggle(opened);
+            }
+            runPendingHide(opened);
+        }
+    });
     private int mLabelsPaddingTop = Util.dpToPx(getContext(), 4f);
     private int mLabelsPaddingRight = Util.dpToPx(getContext(), 0f);
     private int mLabelsPaddingBottom = Util.dpToPx(getContext(), 4f);
@@ -102,13 +153,13 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     private int mOpenDirection;
     private FloatingMenuToggleListener mToggleListener;
     private ExtendedFloatingActionButton mMenuButton;
-    private ValueAnimator mShowBackgroundAnimator;
-    private ValueAnimator mHideBackgroundAnimator;
+    private MenuScrim mScrim;
     private int mBackgroundColor;
     private int mLabelsPosition;
     private Context mLabelsContext;
     private String mMenuLabelText;
     private boolean mUsingMenuLabel;
+    private int mShadowEngine;
 
     public ExtendedFloatingActionMenu(Context context) {
         this(context, null);
@@ -169,13 +220,14 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         String customFont = attr.getString(R.styleable.FloatingActionMenu_menu_labels_customFont);
         try {
             if (!TextUtils.isEmpty(customFont)) {
-                mCustomTypefaceFromFont = Typeface.createFromAsset(getContext().getAssets(), customFont);
+                mCustomTypefaceFromFont = TypefaceCache.get(getContext(), customFont);
             }
         } catch (RuntimeException ex) {
             throw new IllegalArgumentException("Unable to load specified custom font: " + customFont, ex);
         }
         mOpenDirection = attr.getInt(R.styleable.FloatingActionMenu_menu_openDirection, OPEN_UP);
         mBackgroundColor = attr.getColor(R.styleable.FloatingActionMenu_menu_backgroundColor, Color.TRANSPARENT);
+        mShadowEngine = attr.getInt(R.styleable.FloatingActionMenu_menu_shadowEngine, FloatingActionButton.SHADOW_ENGINE_BITMAP);
 
         if (attr.hasValue(R.styleable.FloatingActionMenu_menu_fab_label)) {
             mUsingMenuLabel = true;
@@ -191,46 +243,28 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         mCloseInterpolator = new AnticipateInterpolator();
         mLabelsContext = new ContextThemeWrapper(getContext(), mLabelsStyle);
 
-        initBackgroundDimAnimation();
+        mGeometry = ExtendedGeometry.obtain(getContext());
         createExtendedMenuButton();
+        initBackgroundDimAnimation();
         initMenuButtonAnimations(attr);
         attr.recycle();
     }
 
     private void initMenuButtonAnimations(TypedArray attr) {
         int showResId = attr.getResourceId(R.styleable.FloatingActionMenu_menu_fab_show_animation, R.anim.fab_scale_up);
-        setMenuButtonShowAnimation(AnimationUtils.loadAnimation(getContext(), showResId));
-        mImageToggleShowAnimation = AnimationUtils.loadAnimation(getContext(), showResId);
+        setMenuButtonShowAnimation(AnimationTemplates.load(getContext(), showResId));
+        mImageToggleShowAnimation = AnimationTemplates.load(getContext(), showResId);
         int hideResId = attr.getResourceId(R.styleable.FloatingActionMenu_menu_fab_hide_animation, R.anim.fab_scale_down);
-        setMenuButtonHideAnimation(AnimationUtils.loadAnimation(getContext(), hideResId));
-        mImageToggleHideAnimation = AnimationUtils.loadAnimation(getContext(), hideResId);
+        setMenuButtonHideAnimation(AnimationTemplates.load(getContext(), hideResId));
+        mImageToggleHideAnimation = AnimationTemplates.load(getContext(), hideResId);
     }
 
     private void initBackgroundDimAnimation() {
-        final int maxAlpha = Color.alpha(mBackgroundColor);
-        final int red = Color.red(mBackgroundColor);
-        final int green = Color.green(mBackgroundColor);
-        final int blue = Color.blue(mBackgroundColor);
-
-        mShowBackgroundAnimator = ValueAnimator.ofInt(0, maxAlpha);
-        mShowBackgroundAnimator.setDuration(ANIMATION_DURATION);
-        mShowBackgroundAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                Integer alpha = (Integer) animation.getAnimatedValue();
-                setBackgroundColor(Color.argb(alpha, red, green, blue));
-            }
-        });
+        if (!isBackgroundEnabled()) return;
 
-        mHideBackgroundAnimator = ValueAnimator.ofInt(maxAlpha, 0);
-        mHideBackgroundAnimator.setDuration(ANIMATION_DURATION);
-        mHideBackgroundAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                Integer alpha = (Integer) animation.getAnimatedValue();
-                setBackgroundColor(Color.argb(alpha, red, green, blue));
-            }
-        });
+        mScrim = new MenuScrim(getContext(), mBackgroundColor, ANIMATION_DURATION);
+        addView(mScrim);
+        setChildrenDrawingOrderEnabled(true);
     }
 
     private boolean isBackgroundEnabled() {
@@ -256,6 +290,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         mMenuButton.setColors(mMenuColorNormal, mMenuColorPressed, mMenuColorRipple);
         mMenuButton.mShadowColor = mMenuShadowColor;
         mMenuButton.updateBackground();
+        mMenuButton.setShadowEngine(mShadowEngine);
         mMenuButton.setLabelText(mMenuLabelText);
 
         mMenuText = new TextView(getContext());
@@ -339,13 +374,18 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
             usedWidth += child.getMeasuredWidth();
             height += child.getMeasuredHeight();
 
-            ExtendedLabel label = (ExtendedLabel) child.getTag(R.id.fab_label);
+            ExtendedLabel label = getLabelAt(i);
             if (label != null) {
                 int labelOffset = (mMaxButtonWidth - child.getMeasuredWidth()) / (mUsingMenuLabel ? 1 : 2);
                 int labelUsedWidth = child.getMeasuredWidth() + mLabelsMargin + labelOffset;
                 measureChildWithMargins(label, widthMeasureSpec, 0, heightMeasureSpec, 0); // I allow label to use just the space which is not already used by its FAB - we dont need it with extended FAB it would cause visibility problems
                 usedWidth += label.getMeasuredWidth();
                 maxLabelWidth = Math.max(maxLabelWidth, usedWidth + labelOffset);
+                if (child instanceof ExtendedFloatingActionButton) {
+                    // Only changes with the measured sizes, so the button learns it here instead of on layout
+                    ((ExtendedFloatingActionButton) child).setLabelOffset(
+                            getLabelLeft(child, label) - getButtonLeft(child));
+                }
             }
         }
 
@@ -362,25 +402,34 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         setMeasuredDimension(width, height);
     }
 
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        mGeometry = ExtendedGeometry.obtain(getContext());
+    }
+
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mScrim != null) {
+            mScrim.layoutInParent(this);
+        }
+
         int buttonsHorizontalCenter = mLabelsPosition == LABELS_POSITION_LEFT
                 ? r - l - mMaxButtonWidth / 2 - getPaddingRight()
                 : mMaxButtonWidth / 2 + getPaddingRight();
         boolean openUp = mOpenDirection == OPEN_UP;
 
-        int leftTranslation = 0;
         int menuButtonTop = openUp
-                ? b - t - mMenuButton.calculateMeasuredHeight() - getPaddingBottom()
+                ? b - t - mMenuButton.getMeasuredHeight() - getPaddingBottom()
                 : getPaddingTop();
-        int menuButtonLeft = buttonsHorizontalCenter - mMenuButton.calculateMeasuredWidth() / 2;
-        leftTranslation = Util.dpToPx(getContext(), 8);
-        mMenuButton.layout(menuButtonLeft + leftTranslation, menuButtonTop, menuButtonLeft + leftTranslation + mMenuButton.getMeasuredWidth(),
+        int menuButtonLeft = buttonsHorizontalCenter + getButtonLeft(mMenuButton);
+        mMenuButton.layout(menuButtonLeft, menuButtonTop, menuButtonLeft + mMenuButton.getMeasuredWidth(),
                 menuButtonTop + mMenuButton.getMeasuredHeight());
 
         int nextY = openUp
-                ? menuButtonTop + mMenuButton.calculateMeasuredHeight() + mButtonSpacing
+                ? menuButtonTop + mMenuButton.getMeasuredHeight() + mButtonSpacing
                 : menuButtonTop;
+        int buttonSpacing = mButtonSpacing + mGeometry.buttonSpacingExtra;
 
         for (int i = mButtonsCount - 1; i >= 0; i--) {
             View child = getChildAt(i);
@@ -391,62 +440,22 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
 
             if (fab.getVisibility() == GONE) continue;
 
-            int childExtendedExtraX = getResources().getDimensionPixelSize(R.dimen.extended_button_child_left_offset);
-            int childX = 0;
-            int childY = 0;
-            childX = buttonsHorizontalCenter - fab.getMeasuredWidth() / 2 + childExtendedExtraX;
-            childY = openUp ? nextY - fab.getMeasuredHeight() - mButtonSpacing : nextY;
+            int childX = buttonsHorizontalCenter + getButtonLeft(fab);
+            int childY = openUp ? nextY - fab.getMeasuredHeight() - mButtonSpacing : nextY;
 
             if (fab != mMenuButton) {
-
-                fab.setExtended(true);
-                fab.setLabelTextColor(getMenuButtonColorNormal());
-                fab.measure(fab.calculateMeasuredWidth(), fab.calculateMeasuredHeight());
-
-                fab.layout(childX, childY, childX + fab.calculateMeasuredWidth(),
-                        childY + fab.calculateMeasuredHeight());
-
-                if (!mIsMenuOpening) {
-                    fab.hide(false);
-                }
+                fab.layout(childX, childY, childX + fab.getMeasuredWidth(),
+                        childY + fab.getMeasuredHeight());
             }
 
-            View label = (View) fab.getTag(R.id.fab_label);
+            View label = getLabelAt(i);
             if (label != null) {
-                int labelsOffset = (mUsingMenuLabel ? mMaxButtonWidth / 2 : fab.getMeasuredWidth() / 2) + mLabelsMargin;
-                int labelXNearButton = mLabelsPosition == LABELS_POSITION_LEFT
-                        ? buttonsHorizontalCenter - labelsOffset
-                        : buttonsHorizontalCenter + labelsOffset;
-
-                int labelXAwayFromButton = mLabelsPosition == LABELS_POSITION_LEFT
-                        ? labelXNearButton - label.getMeasuredWidth()
-                        : labelXNearButton + label.getMeasuredWidth();
-
-                int labelLeft = mLabelsPosition == LABELS_POSITION_LEFT
-                        ? labelXAwayFromButton
-                        : labelXNearButton;
-
-                int labelRight = mLabelsPosition == LABELS_POSITION_LEFT
-                        ? labelXNearButton
-                        : labelXAwayFromButton;
-
                 int fabVerticalCenter = Math.round(fab.getY() + fab.getCircleSize() / 2);
                 int alignedLabelTop = fabVerticalCenter - Math.round(label.getMeasuredHeight() / 2.5f);
                 int alignedLabelBottom = fabVerticalCenter + Math.round(label.getMeasuredHeight() / 1.5f);
-                int relatedButtonWidth = fab.calculateMeasuredWidth() / 2;
-                float WHITE_SPACE_PERCENTAGE = 1.6f;
-
-                int extendedLabelLeft = (labelLeft + relatedButtonWidth + label.getMeasuredWidth() / 2) + Math.round(mImageToggle.getWidth() * WHITE_SPACE_PERCENTAGE) / 2;
-                int extendedLabelRight = (labelRight + relatedButtonWidth + label.getMeasuredWidth() / 2) + Math.round(mImageToggle.getWidth() * WHITE_SPACE_PERCENTAGE) / 2;
-                label.layout(extendedLabelLeft, alignedLabelTop, extendedLabelRight, alignedLabelBottom);
-
-                if (!mIsMenuOpening) {
-                    label.setVisibility(INVISIBLE);
-                }
+                int labelLeft = buttonsHorizontalCenter + getLabelLeft(fab, label);
+                label.layout(labelLeft, alignedLabelTop, labelLeft + label.getMeasuredWidth(), alignedLabelBottom);
             }
-            int extendedButtonSpacingExtra = getResources().getDimensionPixelSize(R.dimen.extended_button_spacing_extra);
-            int buttonSpacing = mButtonSpacing + (extendedButtonSpacingExtra);
-            fab.updateBackground();
             nextY = openUp
                     ? childY - buttonSpacing
                     : childY + child.getMeasuredHeight() + buttonSpacing;
@@ -455,6 +464,26 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         alignMenuIcon();
     }
 
+    /**
+     * Left edge of the label of a button, relative to the horizontal center of the buttons.
+     */
+    private int getLabelLeft(View fab, View label) {
+        int labelsOffset = (mUsingMenuLabel ? mMaxButtonWidth / 2 : fab.getMeasuredWidth() / 2) + mLabelsMargin;
+        int labelLeft = mLabelsPosition == LABELS_POSITION_LEFT
+                ? -labelsOffset - label.getMeasuredWidth()
+                : labelsOffset;
+        return labelLeft + fab.getMeasuredWidth() / 2 + label.getMeasuredWidth() / 2
+                + Math.round(mImageToggle.getMeasuredWidth() * LABEL_WHITE_SPACE_PERCENTAGE) / 2;
+    }
+
+    /**
+     * Left edge of a button, relative to the horizontal center of the buttons.
+     */
+    private int getButtonLeft(View fab) {
+        int offset = fab == mMenuButton ? mGeometry.menuButtonLeftOffset : mGeometry.childLeftOffset;
+        return -fab.getMeasuredWidth() / 2 + offset;
+    }
+
     private int adjustForOvershoot(int dimension) {
         return (int) (dimension * 0.03 + dimension);
     }
@@ -466,10 +495,15 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         bringChildToFront(mImageToggle);
         bringChildToFront(mMenuText);
         mButtonsCount = getChildCount();
+        if (mScrim != null) {
+            bringChildToFront(mScrim);
+            mButtonsCount--;
+        }
         alignMenuText();// FIXME: Do we really need this ?
         alignMenuIcon();
         setAnimationInProgressListener();
         createLabels();
+        updateLabelIndex();
     }
 
     private void createLabels() {
@@ -477,24 +511,50 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
 
             if (getChildAt(i) instanceof ExtendedFloatingActionButton) {
                 final ExtendedFloatingActionButton fab = (ExtendedFloatingActionButton) getChildAt(i);
-                if (fab.getTag(R.id.fab_label) != null) continue;
+                if (fab.getLabelView() != null) continue;
                 if (fab != mMenuButton) {
-                    fab.setExtended(true);
                     fab.setBackgroundColor(mExtendedButtonBackgroundColor);
                 }
+                fab.setShadowEngine(mShadowEngine);
                 addLabel(fab);
+                if (fab != mMenuButton) {
+                    applyItemStyle(fab);
+                }
+                syncItemVisibility(fab);
+            }
+        }
+    }
+
+    /**
+     * Applies the extended look and the menu colors to an item button. Done when the button is
+     * added and when the menu colors change, never on layout.
+     */
+    private void applyItemStyle(ExtendedFloatingActionButton fab) {
+        fab.beginUpdate();
+        fab.setExtended(true);
+        if (fab.getLabelView() != null) {
+            fab.setLabelTextColor(getMenuButtonColorNormal());
+        }
+        fab.endUpdate();
+    }
+
+    private void applyItemStyles() {
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child instanceof ExtendedFloatingActionButton && child != mMenuButton) {
+                applyItemStyle((ExtendedFloatingActionButton) child);
             }
         }
     }
 
     private void alignMenuText() {
-        int textIconGap = Math.round(getResources().getDimension(R.dimen.extended_button_gap_between_icon_text));
+        int textIconGap = mGeometry.iconTextGap;
         int textTop = Math.round(mMenuButton.getY()) + mMenuButton.getMeasuredHeight() / 2 - mMenuText.getMeasuredHeight() / 2;
-        int buttonRightEdge = Util.getScreenWidth(getContext()) - (getPaddingRight());
+        int buttonRightEdge = mGeometry.screenWidth - (getPaddingRight());
         int textLeft = 0;
 
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            textLeft = (Util.getScreenWidth(getContext()) / 2 - mMenuText.getMeasuredWidth() / 2) + mImageToggle.getMeasuredWidth() / 2 + textIconGap / 2;
+        if (mGeometry.portrait) {
+            textLeft = (mGeometry.screenWidth / 2 - mMenuText.getMeasuredWidth() / 2) + mImageToggle.getMeasuredWidth() / 2 + textIconGap / 2;
         } else {
             textLeft = (buttonRightEdge - mMenuButton.calculateMeasuredWidthAuto() / 2) - mMenuText.getMeasuredWidth() / 2 + mImageToggle.getMeasuredWidth() / 2 + textIconGap / 2;
         }
@@ -503,7 +563,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     }
 
     private void alignMenuIcon() {
-        int iconLeft = Math.round(mMenuText.getX()) - (mImageToggle.getMeasuredWidth() + getResources().getDimensionPixelOffset(R.dimen.extended_button_gap_between_icon_text));
+        int iconLeft = Math.round(mMenuText.getX()) - (mImageToggle.getMeasuredWidth() + mGeometry.iconTextGapOffset);
         int iconTop = Math.round(mMenuButton.getY()) + mMenuButton.getMeasuredHeight() / 2 - mImageToggle.getMeasuredHeight() / 2;
         mImageToggle.layout(iconLeft, iconTop, iconLeft + mImageToggle.getMeasuredWidth(),
                 iconTop + mImageToggle.getMeasuredHeight());
@@ -555,7 +615,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         fab.updateBackground();
         // label.setOnClickListener(fab.getOnClickListener());
         addView(label);
-        fab.setTag(R.id.fab_label, label);
+        fab.setLabelView(label);
     }
 
     public void setFloatingActionMenuTypeface(int typefaceStyle) {
@@ -567,7 +627,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
             View child = getChildAt(i);
             if (child instanceof ExtendedFloatingActionButton) {
                 final ExtendedFloatingActionButton fab = (ExtendedFloatingActionButton) child;
-                ExtendedLabel label = (ExtendedLabel) fab.getTag(R.id.fab_label);
+                ExtendedLabel label = fab.getLabelView();
                 if (label != null && label.isHandleVisibilityChanges()) {
                     label.setTypeface(null, typefaceStyle);
                 }
@@ -613,6 +673,22 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         return p instanceof MarginLayoutParams;
     }
 
+    @Override
+    public void addView(View child, int index, LayoutParams params) {
+        // Keeps the scrim the last child
+        int scrimIndex = mScrim != null && child != mScrim ? indexOfChild(mScrim) : -1;
+        if (scrimIndex >= 0 && (index < 0 || index > scrimIndex)) {
+            index = scrimIndex;
+        }
+        super.addView(child, index, params);
+    }
+
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        // Only enabled with a scrim, which is the last child but drawn below all others
+        return i == 0 ? childCount - 1 : i - 1;
+    }
+
     private void hideMenuButtonWithImage(boolean animate) {
         if (!isMenuButtonHidden()) {
             mMenuButton.hide(animate);
@@ -657,7 +733,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     /* ===== API methods ===== */
 
     public void toggle(boolean animate) {
-        if (isOpened()) {
+        if (mIsMenuOpening) {
             close(animate);
         } else {
             open(animate);
@@ -665,9 +741,9 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     }
 
     public void open(final boolean animate) {
-        if (!isOpened()) {
+        if (!mIsMenuOpening) {
             if (isBackgroundEnabled()) {
-                mShowBackgroundAnimator.start();
+                mScrim.show(animate);
             }
 
             if (mIconAnimated) {
@@ -679,57 +755,19 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
                 }
             }
 
-            int delay = 0;
-            int counter = 0;
             mIsMenuOpening = true;
-            for (int i = getChildCount() - 1; i >= 0; i--) {
-                View child = getChildAt(i);
-                if (child instanceof ExtendedFloatingActionButton && child.getVisibility() != GONE) {
-                    counter++;
-
-                    final ExtendedFloatingActionButton fab = (ExtendedFloatingActionButton) child;
-                    mUiHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (isOpened()) return;
-
-                            if (fab != mMenuButton) {
-                                fab.show(animate);
-                            }
-
-                            ExtendedLabel label = (ExtendedLabel) fab.getTag(R.id.fab_label);
-                            if (label != null && label.isHandleVisibilityChanges()) {
-                                if (fab != mMenuButton) {
-                                    label.show();
-                                }
-                            }
-                        }
-                    }, delay);
-                    delay += mAnimationDelayPerItem;
-                }
-            }
+            mTimeline.start(true, animate, mAnimationDelayPerItem);
 
             if (!animate) {
                 mMenuText.setText(extendedButtonTextExpanded);
             }
-
-            mUiHandler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    mMenuOpened = true;
-
-                    if (mToggleListener != null) {
-                        mToggleListener.onMenuToggle(true);
-                    }
-                }
-            }, ++counter * mAnimationDelayPerItem);
         }
     }
 
     public void close(final boolean animate) {
-        if (isOpened()) {
+        if (mIsMenuOpening) {
             if (isBackgroundEnabled()) {
-                mHideBackgroundAnimator.start();
+                mScrim.hide(animate);
             }
 
             if (mIconAnimated) {
@@ -741,45 +779,70 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
                 }
             }
 
-            int delay = 0;
-            int counter = 0;
             mIsMenuOpening = false;
-            for (int i = 0; i < getChildCount(); i++) {
-                View child = getChildAt(i);
-                if (child instanceof ExtendedFloatingActionButton && child.getVisibility() != GONE) {
-                    counter++;
-                    final ExtendedFloatingActionButton fab = (ExtendedFloatingActionButton) child;
-                    mUiHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (!isOpened()) return;
-                            if (fab != mMenuButton) {
-                                fab.hide(animate);
-                            }
-                            ExtendedLabel label = (ExtendedLabel) fab.getTag(R.id.fab_label);
-                            if (label != null && label.isHandleVisibilityChanges()) {
-                                label.hide();
-                            }
-                        }
-                    }, delay);
-                    delay += mAnimationDelayPerItem;
-                }
-            }
+            mTimeline.start(false, animate, mAnimationDelayPerItem);
+
             if (!animate) {
                 mMenuText.setText(extendedButtonTextExpanded);
             }
+        }
+    }
 
-            mUiHandler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    mMenuOpened = false;
+    /**
+     * Rebuilds the mapping from child index to label used by measure and layout. The buttons
+     * are the first children, so the index of a button is also its child index.
+     */
+    private void updateLabelIndex() {
+        if (mLabels.length < mButtonsCount) {
+            mLabels = new ExtendedLabel[mButtonsCount];
+        }
+        for (int i = 0; i < mLabels.length; i++) {
+            View child = i < mButtonsCount ? getChildAt(i) : null;
+            mLabels[i] = child instanceof ExtendedFloatingActionButton ? ((ExtendedFloatingActionButton) child).getLabelView() : null;
+        }
+    }
 
-                    if (mToggleListener != null) {
-                        mToggleListener.onMenuToggle(false);
-                    }
+    private ExtendedLabel getLabelAt(int index) {
+        return index < mLabels.length ? mLabels[index] : null;
+    }
+
+    /**
+     * Applies the closed state to a button that joins a closed menu. Visibility of the buttons
+     * and labels is only changed here and by the open/close timeline, layout just positions
+     * them.
+     */
+    private void syncItemVisibility(ExtendedFloatingActionButton fab) {
+        if (mIsMenuOpening) return;
+
+        if (fab != mMenuButton) {
+            fab.hide(false);
+        }
+        View label = fab.getLabelView();
+        if (label != null) {
+            label.setVisibility(INVISIBLE);
+        }
+    }
+
+    /**
+     * Returns the button at the given position in opening order, which starts from the bottom
+     * most child.
+     */
+    private ExtendedFloatingActionButton getTimelineButton(int position) {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            if (child instanceof ExtendedFloatingActionButton && child.getVisibility() != GONE) {
+                if (position-- == 0) {
+                    return (ExtendedFloatingActionButton) child;
                 }
-            }, ++counter * mAnimationDelayPerItem);
+            }
         }
+        return null;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mTimeline.end();
     }
 
     public void setAnimationInProgressListener() {
@@ -878,7 +941,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     }
 
     public void setCorrectPivot() {
-        int buttonLeftPadding = ((Util.getScreenWidth(getContext()) - mMenuButton.calculateMeasuredWidth()) - getPaddingRight()); // We suppose that left padding is equal to right padding.
+        int buttonLeftPadding = ((mGeometry.screenWidth - mMenuButton.calculateMeasuredWidth()) - getPaddingRight()); // We suppose that left padding is equal to right padding.
         int pivotX = Math.round(buttonLeftPadding + mMenuButton.calculateMeasuredWidth() / 2);
         int pivotY = Math.round(mMenuButton.getY() + mMenuButton.calculateMeasuredHeight() / 2);
         setPivotX(pivotX);
@@ -911,28 +974,50 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         setCorrectPivot();
         if (!isMenuHidden() && !mIsMenuButtonAnimationRunning) {
             mIsMenuButtonAnimationRunning = true;
-            if (isOpened()) {
+            if (isOpeningOrClosing()) {
+                mPendingHide = PENDING_HIDE_MENU;
+                mPendingHideAnimate = animate;
                 close(animate);
-                mUiHandler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (animate) {
-                            startAnimation(mMenuButtonHideAnimation);
-                        }
-                        setVisibility(INVISIBLE);
-                        mIsMenuButtonAnimationRunning = false;
-                    }
-                }, mAnimationDelayPerItem * mButtonsCount);
             } else {
-                if (animate) {
-                    startAnimation(mMenuButtonHideAnimation);
-                }
-                setVisibility(INVISIBLE);
+                playMenuHideAnimation(animate);
                 mIsMenuButtonAnimationRunning = false;
             }
         }
     }
 
+    /**
+     * Hides the menu or the menu button once the closing timeline has finished. A menu that was
+     * opened again meanwhile stays shown.
+     */
+    private void runPendingHide(boolean opened) {
+        int pendingHide = mPendingHide;
+        mPendingHide = PENDING_HIDE_NONE;
+        if (pendingHide == PENDING_HIDE_NONE) return;
+
+        if (!opened) {
+            if (pendingHide == PENDING_HIDE_MENU) {
+                playMenuHideAnimation(mPendingHideAnimate);
+            } else {
+                hideMenuButtonWithImage(mPendingHideAnimate);
+            }
+        }
+        mIsMenuButtonAnimationRunning = false;
+    }
+
+    /**
+     * @return true if the menu is open, or its buttons are still being shown or hidden
+     */
+    private boolean isOpeningOrClosing() {
+        return mIsMenuOpening || mTimeline.isRunning();
+    }
+
+    private void playMenuHideAnimation(boolean animate) {
+        if (animate) {
+            startAnimation(mMenuButtonHideAnimation);
+        }
+        setVisibility(INVISIBLE);
+    }
+
     public void toggleMenu(boolean animate) {
         if (isMenuHidden()) {
             showMenu(animate);
@@ -964,14 +1049,10 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         setCorrectPivot();
         if (!isMenuButtonHidden() && !mIsMenuButtonAnimationRunning) {
             mIsMenuButtonAnimationRunning = true;
-            if (isOpened()) {
+            if (isOpeningOrClosing()) {
+                mPendingHide = PENDING_HIDE_MENU_BUTTON;
+                mPendingHideAnimate = animate;
                 close(animate);
-                mUiHandler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        hideMenuButtonWithImage(animate);
-                    }
-                }, mAnimationDelayPerItem * mButtonsCount);
             } else {
                 hideMenuButtonWithImage(animate);
             }
@@ -993,6 +1074,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     public void setMenuButtonColorNormalResId(int colorResId) {
         mMenuColorNormal = getResources().getColor(colorResId);
         mMenuButton.setColorNormalResId(colorResId);
+        applyItemStyles();
     }
 
     public int getMenuButtonColorNormal() {
@@ -1002,6 +1084,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     public void setMenuButtonColorNormal(int color) {
         mMenuColorNormal = color;
         mMenuButton.setColorNormal(color);
+        applyItemStyles();
     }
 
     public void setMenuButtonColorPressedResId(int colorResId) {
@@ -1045,13 +1128,18 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
     public void addMenuButton(ExtendedFloatingActionButton fab) {
         addView(fab, mButtonsCount - 2);
         mButtonsCount++;
+        fab.setShadowEngine(mShadowEngine);
         addLabel(fab);
+        applyItemStyle(fab);
+        syncItemVisibility(fab);
+        updateLabelIndex();
     }
 
     public void removeMenuButton(ExtendedFloatingActionButton fab) {
         removeView(fab.getLabelView());
         removeView(fab);
         mButtonsCount--;
+        updateLabelIndex();
     }
     
     public void setExtendedButtonTextCollapsed(String menuText) {
@@ -1080,7 +1168,11 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
 
         addView(fab, index);
         mButtonsCount++;
+        fab.setShadowEngine(mShadowEngine);
         addLabel(fab);
+        applyItemStyle(fab);
+        syncItemVisibility(fab);
+        updateLabelIndex();
     }
 
     public void removeAllMenuButtons() {
@@ -1096,6 +1188,7 @@ public class ExtendedFloatingActionMenu extends ViewGroup implements FloatingMen
         for (ExtendedFloatingActionButton v : viewsToRemove) {
             removeMenuButton(v);
         }
+        updateLabelIndex();
     }
 
     public String getMenuButtonLabelText() {
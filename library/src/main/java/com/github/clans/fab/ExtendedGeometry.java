@@ -0,0 +1,119 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.RectF;
+import android.util.DisplayMetrics;
+
+/**
+ * Immutable snapshot of the dimensions used by the extended button, its shapes and the extended
+ * menu, in pixels.
+ * <p>
+ * The dimensions only depend on the orientation, screen width and density, so one snapshot is
+ * shared by all extended views of the same configuration. Views take it on creation and again in
+ * {@code onConfigurationChanged}, measure and draw only read its fields.
+ */
+final class ExtendedGeometry {
+
+    private static ExtendedGeometry sCurrent;
+
+    final boolean portrait;
+    final int screenWidth;
+    final float density;
+
+    final int fabSizeNormal;
+    final int fabSizeMini;
+    /** Width of the button without its shadow in the current orientation. */
+    final int buttonWidth;
+    final int portraitButtonWidth;
+    final int landscapeButtonWidth;
+    /** Width of the rounded rectangle drawn by {@link ExtendedButtonShadowShape}. */
+    final int fillWidth;
+    final int iconTextGap;
+    final int iconTextGapOffset;
+    final int buttonSpacingExtra;
+    final int childLeftOffset;
+    final int menuButtonLeftOffset;
+
+    /** Bounds of the rounded rectangle drawn by {@link ExtendedButtonShadowShape}. */
+    final float shapeLeft;
+    final float shapeTop;
+    final float shapeRight;
+    final float shapeBottom;
+    final float shadowLeft;
+    final float shadowTop;
+    final float shadowRight;
+    final float shadowBottom;
+    final int outlineWidth;
+    final int outlineCompatHeight;
+
+    private ExtendedGeometry(Resources res, boolean portrait, int screenWidth, float density) {
+        this.portrait = portrait;
+        this.screenWidth = screenWidth;
+        this.density = density;
+
+        int buttonPadding = res.getDimensionPixelSize(R.dimen.extended_button_padding);
+        int landscapeWidth = res.getDimensionPixelSize(R.dimen.extended_button_width_landscape);
+        int shadowPadding = res.getDimensionPixelSize(R.dimen.extended_button_shadow_padding);
+        int extraShadowSpace = dpToPx(5f);
+
+        fabSizeNormal = res.getDimensionPixelSize(R.dimen.fab_size_normal);
+        fabSizeMini = res.getDimensionPixelSize(R.dimen.fab_size_mini);
+        portraitButtonWidth = screenWidth - buttonPadding;
+        landscapeButtonWidth = landscapeWidth;
+        buttonWidth = portrait ? portraitButtonWidth : landscapeButtonWidth;
+        fillWidth = portrait ? screenWidth - shadowPadding : landscapeWidth - extraShadowSpace;
+        iconTextGap = Math.round(res.getDimension(R.dimen.extended_button_gap_between_icon_text));
+        iconTextGapOffset = res.getDimensionPixelOffset(R.dimen.extended_button_gap_between_icon_text);
+        buttonSpacingExtra = res.getDimensionPixelSize(R.dimen.extended_button_spacing_extra);
+        childLeftOffset = res.getDimensionPixelSize(R.dimen.extended_button_child_left_offset);
+        menuButtonLeftOffset = dpToPx(8f);
+
+        shapeLeft = dpToPx(-3f);
+        shapeTop = dpToPx(-2f);
+        shapeRight = fillWidth;
+        shapeBottom = dpToPx(56f);
+        // The shadow has the width of the button and sits a little bit lower
+        shadowLeft = dpToPx(6f);
+        shadowTop = dpToPx(18f);
+        shadowBottom = dpToPx(60f);
+        shadowRight = portrait ? screenWidth - (buttonPadding + dpToPx(7f)) : landscapeWidth - shadowLeft;
+        outlineWidth = portrait ? screenWidth - (buttonPadding - extraShadowSpace) : landscapeWidth + extraShadowSpace;
+        outlineCompatHeight = dpToPx(70f);
+    }
+
+    /**
+     * Returns the snapshot for the current configuration of the context, reusing the shared one
+     * if it still matches.
+     */
+    static ExtendedGeometry obtain(Context context) {
+        Resources res = context.getResources();
+        DisplayMetrics metrics = res.getDisplayMetrics();
+        boolean portrait = res.getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
+
+        ExtendedGeometry geometry = sCurrent;
+        if (geometry == null || geometry.portrait != portrait || geometry.screenWidth != metrics.widthPixels
+                || geometry.density != metrics.density) {
+            geometry = new ExtendedGeometry(res, portrait, metrics.widthPixels, metrics.density);
+            sCurrent = geometry;
+        }
+        return geometry;
+    }
+
+    /**
+     * Returns a new rectangle with the bounds of the shape, the snapshot is shared and has to
+     * stay unchanged.
+     */
+    RectF newShapeRect() {
+        return new RectF(shapeLeft, shapeTop, shapeRight, shapeBottom);
+    }
+
+    int getCircleSize(int fabSize) {
+        return fabSize == FloatingActionButton.SIZE_NORMAL ? fabSizeNormal : fabSizeMini;
+    }
+
+    private int dpToPx(float dp) {
+        return Math.round(dp * density);
+    }
+}
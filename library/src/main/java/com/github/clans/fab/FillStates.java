@@ -0,0 +1,182 @@
+package com.github.clans.fab;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.StateListDrawable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of the circle fill states used by the buttons, keyed by their colors.
+ * <p>
+ * Buttons with the same colors create their fill from a shared {@link Drawable.ConstantState},
+ * so the state list with its colors and paints is built once per appearance. The circles take
+ * their geometry from the bounds they are drawn in, so buttons of different sizes and insets
+ * share them without being mutated.
+ */
+final class FillStates {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final LinkedHashMap<Key, Drawable.ConstantState> sStates =
+            new LinkedHashMap<Key, Drawable.ConstantState>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Drawable.ConstantState> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private FillStates() {
+    }
+
+    private static synchronized Drawable.ConstantState obtain(int colorNormal, int colorPressed, int colorDisabled) {
+        Key key = new Key(colorNormal, colorPressed, colorDisabled);
+        Drawable.ConstantState state = sStates.get(key);
+        if (state == null) {
+            StateListDrawable drawable = new StateListDrawable();
+            drawable.addState(new int[]{-android.R.attr.state_enabled}, createCircleDrawable(colorDisabled));
+            drawable.addState(new int[]{android.R.attr.state_pressed}, createCircleDrawable(colorPressed));
+            drawable.addState(new int[]{}, createCircleDrawable(colorNormal));
+            state = drawable.getConstantState();
+            sStates.put(key, state);
+        }
+        return state;
+    }
+
+    /**
+     * @return a fill for one button, sharing its state with the fills of the same colors
+     */
+    static Drawable newDrawable(int colorNormal, int colorPressed, int colorDisabled, Resources res) {
+        return obtain(colorNormal, colorPressed, colorDisabled).newDrawable(res);
+    }
+
+    private static Drawable createCircleDrawable(int color) {
+        return new CircleDrawable(new CircleState(color));
+    }
+
+    /**
+     * Circle inscribed in the bounds of the drawable. Unlike a ShapeDrawable it keeps no size of
+     * its own, drawables created from one state only share the color.
+     */
+    private static final class CircleDrawable extends Drawable {
+
+        private CircleState mState;
+        private boolean mMutated;
+
+        CircleDrawable(CircleState state) {
+            mState = state;
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            Rect bounds = getBounds();
+            Paint paint = mState.mPaint;
+            paint.setAlpha(Color.alpha(mState.mColor) * mState.mAlpha / 255);
+            canvas.drawCircle(bounds.exactCenterX(), bounds.exactCenterY(),
+                    Math.min(bounds.width(), bounds.height()) / 2f, paint);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mState.mAlpha = alpha;
+            invalidateSelf();
+        }
+
+        @Override
+        public int getAlpha() {
+            return mState.mAlpha;
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mState.mPaint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+
+        @Override
+        public Drawable mutate() {
+            if (!mMutated) {
+                mState = new CircleState(mState);
+                mMutated = true;
+            }
+            return this;
+        }
+
+        @Override
+        public ConstantState getConstantState() {
+            return mState;
+        }
+    }
+
+    private static final class CircleState extends Drawable.ConstantState {
+
+        final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        final int mColor;
+        int mAlpha = 255;
+
+        CircleState(int color) {
+            mColor = color;
+            mPaint.setColor(color);
+        }
+
+        CircleState(CircleState state) {
+            mColor = state.mColor;
+            mAlpha = state.mAlpha;
+            mPaint.set(state.mPaint);
+        }
+
+        @Override
+        public Drawable newDrawable() {
+            return new CircleDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+
+    private static final class Key {
+
+        private final int mColorNormal;
+        private final int mColorPressed;
+        private final int mColorDisabled;
+
+        Key(int colorNormal, int colorPressed, int colorDisabled) {
+            mColorNormal = colorNormal;
+            mColorPressed = colorPressed;
+            mColorDisabled = colorDisabled;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return key.mColorNormal == mColorNormal
+                    && key.mColorPressed == mColorPressed
+                    && key.mColorDisabled == mColorDisabled;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mColorNormal;
+            result = 31 * result + mColorPressed;
+            result = 31 * result + mColorDisabled;
+            return result;
+        }
+    }
+}
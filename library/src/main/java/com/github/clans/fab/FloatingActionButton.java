@@ -4,25 +4,24 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
-import android.graphics.Xfermode;
+import android.graphics.drawable.AnimatedVectorDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
 import android.graphics.drawable.LayerDrawable;
 import android.graphics.drawable.RippleDrawable;
-import android.graphics.drawable.ShapeDrawable;
 import android.graphics.drawable.StateListDrawable;
-import android.graphics.drawable.shapes.OvalShape;
-import android.graphics.drawable.shapes.Shape;
 import android.os.Build;
-import android.os.SystemClock;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
@@ -30,18 +29,22 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewOutlineProvider;
 import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class FloatingActionButton extends ImageButton {
 
     public static final int SIZE_NORMAL = 0;
     public static final int SIZE_MINI = 1;
-    private static final Xfermode PORTER_DUFF_CLEAR = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
+    public static final int SHADOW_ENGINE_BITMAP = 0;
+    public static final int SHADOW_ENGINE_ELEVATION = 1;
     private static final long PAUSE_GROWING_TIME = 200;
     private static final double BAR_SPIN_CYCLE_TIME = 500;
     private static final int BAR_MAX_LENGTH = 270;
+    private static final long NO_PENDING_PROGRESS = Long.MIN_VALUE;
+    private static final long PENDING_PROGRESS_ANIMATE = 1L << 32;
     int mFabSize;
     boolean mShowShadow;
     int mShadowColor;
@@ -56,14 +59,38 @@ public class FloatingActionButton extends ImageButton {
     private int mIconSize = Util.dpToPx(getContext(), 24f);
     private Animation mShowAnimation;
     private Animation mHideAnimation;
+    private AnimationPlayer mAnimationPlayer;
+    private boolean mHiding;
     private String mLabelText;
     private OnClickListener mClickListener;
     private Drawable mBackgroundDrawable;
+    private Label mLabel;
+    // Label appearance set while the label does not exist yet, see applyLabelOverrides()
+    private int mLabelVisibility = -1;
+    private boolean mHasLabelColors;
+    private int mLabelColorNormal;
+    private int mLabelColorPressed;
+    private int mLabelColorRipple;
+    private ColorStateList mLabelTextColors;
+    private FloatingMenuItem mMenuItem;
+    private BackgroundDrawable mLayerDrawable;
+    private Shadow mShadow;
+    private Drawable mLayerIcon;
+    private Drawable mEmptyIcon;
+    private Drawable mLayerProgress;
+    private Drawable mEmptyProgress;
+    private AnimatedVectorDrawable mProgressSpinner;
+    private GradientDrawable mProgressSpinnerBackground;
+    private LayerDrawable mProgressSpinnerRing;
+    private int mAppliedColorNormal;
+    private int mAppliedColorPressed;
+    private int mAppliedColorDisabled;
+    private int mAppliedColorRipple;
     GestureDetector mGestureDetector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
 
         @Override
         public boolean onDown(MotionEvent e) {
-            Label label = (Label) getTag(R.id.fab_label);
+            Label label = mLabel;
             if (label != null) {
                 label.onActionDown();
             }
@@ -73,7 +100,7 @@ public class FloatingActionButton extends ImageButton {
 
         @Override
         public boolean onSingleTapUp(MotionEvent e) {
-            Label label = (Label) getTag(R.id.fab_label);
+            Label label = mLabel;
             if (label != null) {
                 label.onActionUp();
             }
@@ -83,6 +110,8 @@ public class FloatingActionButton extends ImageButton {
     });
     private boolean mUsingElevation;
     private boolean mUsingElevationCompat;
+    private int mShadowEngine = SHADOW_ENGINE_BITMAP;
+    private BackgroundUpdater mBackgroundUpdater;
     // Progress
     private boolean mProgressBarEnabled;
     private int mProgressWidth = Util.dpToPx(getContext(), 6f);
@@ -96,7 +125,33 @@ public class FloatingActionButton extends ImageButton {
     private Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private boolean mProgressIndeterminate;
-    private long mLastTimeAnimated;
+    private final AtomicLong mPendingProgress = new AtomicLong(NO_PENDING_PROGRESS);
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    /**
+     * The button stays visible while the hide animation plays and becomes {@link #INVISIBLE}
+     * afterwards, unless the hide was cancelled by a visibility change meanwhile.
+     */
+    private final Runnable mHideEndAction = new Runnable() {
+        @Override
+        public void run() {
+            if (mHiding) {
+                mHiding = false;
+                setButtonVisibility(INVISIBLE);
+            }
+        }
+    };
+    private final Runnable mApplyPendingProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingProgress();
+        }
+    };
+    private final FrameTicker mProgressTicker = new FrameTicker(new FrameTicker.Callback() {
+        @Override
+        public boolean onTick(long deltaMillis) {
+            return onProgressTick(deltaMillis);
+        }
+    });
     private float mSpinSpeed = 195.0f; //The amount of degrees per second
     private long mPausedTimeWithoutGrowing = 0;
     private double mTimeStartGrowing;
@@ -111,6 +166,7 @@ public class FloatingActionButton extends ImageButton {
     private boolean mShouldSetProgress;
     private int mProgressMax = 100;
     private boolean mShowProgressBackground;
+    private boolean mProgressOnRenderThread;
 
     public FloatingActionButton(Context context) {
         this(context, null);
@@ -149,6 +205,7 @@ public class FloatingActionButton extends ImageButton {
         mProgressBackgroundColor = attr.getColor(R.styleable.FloatingActionButton_fab_progress_backgroundColor, 0x4D000000);
         mProgressMax = attr.getInt(R.styleable.FloatingActionButton_fab_progress_max, mProgressMax);
         mShowProgressBackground = attr.getBoolean(R.styleable.FloatingActionButton_fab_progress_showBackground, true);
+        mProgressOnRenderThread = attr.getBoolean(R.styleable.FloatingActionButton_fab_progress_renderThread, false);
 
         if (attr.hasValue(R.styleable.FloatingActionButton_fab_progress)) {
             mProgress = attr.getInt(R.styleable.FloatingActionButton_fab_progress, 0);
@@ -181,12 +238,12 @@ public class FloatingActionButton extends ImageButton {
 
     private void initShowAnimation(TypedArray attr) {
         int resourceId = attr.getResourceId(R.styleable.FloatingActionButton_fab_showAnimation, R.anim.fab_scale_up);
-        mShowAnimation = AnimationUtils.loadAnimation(getContext(), resourceId);
+        mShowAnimation = AnimationTemplates.load(getContext(), resourceId);
     }
 
     private void initHideAnimation(TypedArray attr) {
         int resourceId = attr.getResourceId(R.styleable.FloatingActionButton_fab_hideAnimation, R.anim.fab_scale_down);
-        mHideAnimation = AnimationUtils.loadAnimation(getContext(), resourceId);
+        mHideAnimation = AnimationTemplates.load(getContext(), resourceId);
     }
 
     protected int getCircleSize() {
@@ -240,27 +297,13 @@ public class FloatingActionButton extends ImageButton {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        if (mProgressBarEnabled) {
+        // The spinner draws its ring from the background
+        if (mProgressBarEnabled && !usesProgressSpinner()) {
             if (mShowProgressBackground) {
                 canvas.drawArc(mProgressCircleBounds, 360, 360, false, mBackgroundPaint);
             }
 
-            boolean shouldInvalidate = false;
-
             if (mProgressIndeterminate) {
-                shouldInvalidate = true;
-
-                long deltaTime = SystemClock.uptimeMillis() - mLastTimeAnimated;
-                float deltaNormalized = deltaTime * mSpinSpeed / 1000.0f;
-
-                updateProgressLength(deltaTime);
-
-                mCurrentProgress += deltaNormalized;
-                if (mCurrentProgress > 360f) {
-                    mCurrentProgress -= 360f;
-                }
-
-                mLastTimeAnimated = SystemClock.uptimeMillis();
                 float from = mCurrentProgress - 90;
                 float to = mBarLength + mBarExtraLength;
 
@@ -271,26 +314,106 @@ public class FloatingActionButton extends ImageButton {
 
                 canvas.drawArc(mProgressCircleBounds, from, to, false, mProgressPaint);
             } else {
-                if (mCurrentProgress != mTargetProgress) {
-                    shouldInvalidate = true;
-                    float deltaTime = (float) (SystemClock.uptimeMillis() - mLastTimeAnimated) / 1000;
-                    float deltaNormalized = deltaTime * mSpinSpeed;
-
-                    if (mCurrentProgress > mTargetProgress) {
-                        mCurrentProgress = Math.max(mCurrentProgress - deltaNormalized, mTargetProgress);
-                    } else {
-                        mCurrentProgress = Math.min(mCurrentProgress + deltaNormalized, mTargetProgress);
-                    }
-                    mLastTimeAnimated = SystemClock.uptimeMillis();
-                }
-
                 canvas.drawArc(mProgressCircleBounds, -90, mCurrentProgress, false, mProgressPaint);
             }
+        }
+    }
+
+    /**
+     * Advances the progress animation by one frame.
+     *
+     * @return true while there is still something to animate
+     */
+    private boolean onProgressTick(long deltaMillis) {
+        if (!mProgressBarEnabled) return false;
+
+        if (mProgressIndeterminate) {
+            updateProgressLength(deltaMillis);
+
+            mCurrentProgress += deltaMillis * mSpinSpeed / 1000.0f;
+            if (mCurrentProgress > 360f) {
+                mCurrentProgress -= 360f;
+            }
+        } else {
+            if (mCurrentProgress == mTargetProgress) return false;
 
-            if (shouldInvalidate) {
-                invalidate();
+            float deltaNormalized = deltaMillis * mSpinSpeed / 1000.0f;
+            if (mCurrentProgress > mTargetProgress) {
+                mCurrentProgress = Math.max(mCurrentProgress - deltaNormalized, mTargetProgress);
+            } else {
+                mCurrentProgress = Math.min(mCurrentProgress + deltaNormalized, mTargetProgress);
             }
         }
+
+        invalidate();
+        return mProgressIndeterminate || mCurrentProgress != mTargetProgress;
+    }
+
+    /**
+     * Runs the progress animation only while there is something to animate and the button can
+     * actually be seen, so spinners stop costing frames when the button is detached or hidden.
+     */
+    private void updateProgressTicker() {
+        // Visibility can change from the View constructor, before the ticker is created
+        if (mProgressTicker == null) return;
+
+        boolean visible = !isInEditMode() && getWindowToken() != null && isShown()
+                && getWindowVisibility() == VISIBLE;
+        boolean spinner = usesProgressSpinner();
+        boolean animating = mProgressBarEnabled && !spinner
+                && (mProgressIndeterminate || mCurrentProgress != mTargetProgress);
+        if (animating && visible) {
+            mProgressTicker.start();
+        } else {
+            mProgressTicker.stop();
+        }
+
+        if (mProgressSpinner != null) {
+            updateProgressSpinner(spinner && visible);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateProgressSpinner(boolean running) {
+        if (running && !mProgressSpinner.isRunning()) {
+            mProgressSpinner.start();
+        } else if (!running && mProgressSpinner.isRunning()) {
+            mProgressSpinner.stop();
+        }
+    }
+
+    /**
+     * Whether the indeterminate progress is currently shown by the animated vector spinner in the
+     * background instead of being drawn frame by frame in {@link #onDraw(Canvas)}.
+     */
+    private boolean usesProgressSpinner() {
+        return mProgressOnRenderThread && mProgressBarEnabled && mProgressIndeterminate
+                && Util.hasLollipop() && !isInEditMode();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateProgressTicker();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelAnimation();
+        mProgressTicker.stop();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateProgressTicker();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateProgressTicker();
     }
 
     private void updateProgressLength(long deltaTimeInMillis) {
@@ -351,61 +474,172 @@ public class FloatingActionButton extends ImageButton {
         super.setLayoutParams(params);
     }
 
+    /**
+     * Brings the background in line with the current appearance. The drawable tree is created
+     * once and then updated in place. The circle fill is shared with other buttons of the same
+     * colors through {@link FillStates} and is only replaced when the colors change. Progress
+     * updates do not go through here, they only redraw the progress arc.
+     */
     void updateBackground() {
-        LayerDrawable layerDrawable;
-        if (hasShadow()) {
-            layerDrawable = new LayerDrawable(new Drawable[]{
-                    new Shadow(),
+        if (mBackgroundUpdater != null) {
+            mBackgroundUpdater.clear();
+        }
+
+        Drawable icon = getIconDrawable();
+        Drawable progress = getProgressDrawable();
+        if (mLayerDrawable == null) {
+            mShadow = new Shadow();
+            mLayerDrawable = new BackgroundDrawable(new Drawable[]{
+                    mShadow,
+                    progress,
                     createFillDrawable(),
-                    getIconDrawable()
+                    icon
             });
+            mLayerProgress = progress;
+            mLayerIcon = icon;
         } else {
-            layerDrawable = new LayerDrawable(new Drawable[]{
-                    createFillDrawable(),
-                    getIconDrawable()
-            });
+            updateFillDrawable();
+            if (mLayerProgress != progress) {
+                mLayerDrawable.setProgress(progress);
+                mLayerProgress = progress;
+            }
+            if (mLayerIcon != icon) {
+                mLayerDrawable.setIcon(icon);
+                mLayerIcon = icon;
+            }
         }
+        mShadow.update();
 
-        int iconSize = -1;
-        if (getIconDrawable() != null) {
-            iconSize = Math.max(getIconDrawable().getIntrinsicWidth(), getIconDrawable().getIntrinsicHeight());
-        }
+        int iconSize = Math.max(icon.getIntrinsicWidth(), icon.getIntrinsicHeight());
         int iconOffset = (getCircleSize() - (iconSize > 0 ? iconSize : mIconSize)) / 2;
-        int circleInsetHorizontal = hasShadow() ? mShadowRadius + Math.abs(mShadowXOffset) : 0;
-        int circleInsetVertical = hasShadow() ? mShadowRadius + Math.abs(mShadowYOffset) : 0;
+        int progressInsetHorizontal = hasShadow() ? mShadowRadius + Math.abs(mShadowXOffset) : 0;
+        int progressInsetVertical = hasShadow() ? mShadowRadius + Math.abs(mShadowYOffset) : 0;
+        int circleInsetHorizontal = progressInsetHorizontal;
+        int circleInsetVertical = progressInsetVertical;
 
         if (mProgressBarEnabled) {
             circleInsetHorizontal += mProgressWidth;
             circleInsetVertical += mProgressWidth;
         }
-        layerDrawable.setLayerInset(
-                hasShadow() ? 2 : 1,
-                circleInsetHorizontal + iconOffset,
-                circleInsetVertical + iconOffset,
-                circleInsetHorizontal + iconOffset,
-                circleInsetVertical + iconOffset
-        );
-        setBackgroundCompat(layerDrawable);
+        mLayerDrawable.setInsets(progressInsetHorizontal, progressInsetVertical,
+                circleInsetHorizontal, circleInsetVertical,
+                circleInsetHorizontal + iconOffset, circleInsetVertical + iconOffset);
+
+        if (getBackground() != mLayerDrawable) {
+            setBackgroundCompat(mLayerDrawable);
+        } else {
+            mLayerDrawable.invalidateSelf();
+        }
+    }
+
+    /**
+     * Starts a batch of appearance changes. Until the matching {@link #endUpdate()} call the
+     * background of the <b>FloatingActionButton</b> is rebuilt at most once, when the outermost batch ends.
+     * Calls can be nested.
+     */
+    public void beginUpdate() {
+        getBackgroundUpdater().beginUpdate();
+    }
+
+    /**
+     * Ends a batch started by {@link #beginUpdate()} and applies the pending changes.
+     */
+    public void endUpdate() {
+        getBackgroundUpdater().endUpdate();
+    }
+
+    /**
+     * Requests a layout after the size of the button changed.
+     */
+    private void requestResize() {
+        notifyMenuContentChanged();
+        requestLayout();
+    }
+
+    /**
+     * A {@link FloatingActionMenu} only measures its children again after it was told that
+     * their size, labels or visibility changed.
+     */
+    private void notifyMenuContentChanged() {
+        if (getParent() instanceof FloatingActionMenu) {
+            ((FloatingActionMenu) getParent()).invalidateMeasureCache();
+        }
+    }
+
+    private void scheduleBackgroundUpdate() {
+        getBackgroundUpdater().schedule();
+    }
+
+    private BackgroundUpdater getBackgroundUpdater() {
+        // Created lazily since the super constructor already calls the setters
+        if (mBackgroundUpdater == null) {
+            mBackgroundUpdater = new BackgroundUpdater(this, new Runnable() {
+                @Override
+                public void run() {
+                    updateBackground();
+                }
+            });
+        }
+        return mBackgroundUpdater;
     }
 
     protected Drawable getIconDrawable() {
         if (mIcon != null) {
             return mIcon;
         } else {
-            return new ColorDrawable(Color.TRANSPARENT);
+            if (mEmptyIcon == null) {
+                mEmptyIcon = new ColorDrawable(Color.TRANSPARENT);
+            }
+            return mEmptyIcon;
+        }
+    }
+
+    /**
+     * Returns the progress layer of the background: the spinner ring while it is in use and an
+     * empty drawable otherwise.
+     */
+    private Drawable getProgressDrawable() {
+        if (usesProgressSpinner()) {
+            return getProgressSpinnerRing();
         }
+        if (mEmptyProgress == null) {
+            mEmptyProgress = new ColorDrawable(Color.TRANSPARENT);
+        }
+        return mEmptyProgress;
+    }
+
+    /**
+     * The spinner arc is an {@link AnimatedVectorDrawable} whose stroke covers the whole radius.
+     * It sits below the fill, so only the ring outside of the circle stays visible and its width
+     * follows the progress width. The ring background is an oval below the arc.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private Drawable getProgressSpinnerRing() {
+        if (mProgressSpinnerRing == null) {
+            mProgressSpinner = (AnimatedVectorDrawable) getContext()
+                    .getDrawable(R.drawable.fab_progress_spinner).mutate();
+            mProgressSpinnerBackground = new GradientDrawable();
+            mProgressSpinnerBackground.setShape(GradientDrawable.OVAL);
+            mProgressSpinnerRing = new LayerDrawable(new Drawable[]{
+                    mProgressSpinnerBackground,
+                    mProgressSpinner
+            });
+        }
+        mProgressSpinner.setTint(mProgressColor);
+        mProgressSpinnerBackground.setColor(mShowProgressBackground
+                ? mProgressBackgroundColor : Color.TRANSPARENT);
+        return mProgressSpinnerRing;
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     private Drawable createFillDrawable() {
-        StateListDrawable drawable = new StateListDrawable();
-        drawable.addState(new int[]{-android.R.attr.state_enabled}, createCircleDrawable(mColorDisabled));
-        drawable.addState(new int[]{android.R.attr.state_pressed}, createCircleDrawable(mColorPressed));
-        drawable.addState(new int[]{}, createCircleDrawable(mColorNormal));
+        Drawable drawable = createCircleDrawable();
 
         if (Util.hasLollipop()) {
+            mAppliedColorRipple = mColorRipple;
             RippleDrawable ripple = new RippleDrawable(new ColorStateList(new int[][]{{}},
                     new int[]{mColorRipple}), drawable, null);
+            ripple.setId(0, BackgroundDrawable.LAYER_FILL);
             setOutlineProvider(new ViewOutlineProvider() {
                 @Override
                 public void getOutline(View view, Outline outline) {
@@ -420,10 +654,33 @@ public class FloatingActionButton extends ImageButton {
         return drawable;
     }
 
-    private Drawable createCircleDrawable(int color) {
-        CircleDrawable shapeDrawable = new CircleDrawable(new OvalShape());
-        shapeDrawable.getPaint().setColor(color);
-        return shapeDrawable;
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateFillDrawable() {
+        if (mAppliedColorNormal != mColorNormal || mAppliedColorPressed != mColorPressed
+                || mAppliedColorDisabled != mColorDisabled) {
+            Drawable drawable = createCircleDrawable();
+            if (Util.hasLollipop()) {
+                RippleDrawable ripple = (RippleDrawable) mBackgroundDrawable;
+                ripple.setDrawableByLayerId(BackgroundDrawable.LAYER_FILL, drawable);
+                drawable.setBounds(ripple.getBounds());
+                drawable.setState(ripple.getState());
+            } else {
+                mLayerDrawable.setFill(drawable);
+                mBackgroundDrawable = drawable;
+            }
+        }
+
+        if (Util.hasLollipop() && mAppliedColorRipple != mColorRipple) {
+            mAppliedColorRipple = mColorRipple;
+            ((RippleDrawable) mBackgroundDrawable).setColor(ColorStateList.valueOf(mColorRipple));
+        }
+    }
+
+    private Drawable createCircleDrawable() {
+        mAppliedColorNormal = mColorNormal;
+        mAppliedColorPressed = mColorPressed;
+        mAppliedColorDisabled = mColorDisabled;
+        return FillStates.newDrawable(mColorNormal, mColorPressed, mColorDisabled, getResources());
     }
 
     @SuppressWarnings("deprecation")
@@ -477,7 +734,7 @@ public class FloatingActionButton extends ImageButton {
     private void setupProgressBounds() {
         int circleInsetHorizontal = hasShadow() ? getShadowX() : 0;
         int circleInsetVertical = hasShadow() ? getShadowY() : 0;
-        mProgressCircleBounds = new RectF(
+        mProgressCircleBounds.set(
                 circleInsetHorizontal + mProgressWidth / 2,
                 circleInsetVertical + mProgressWidth / 2,
                 calculateMeasuredWidth() - circleInsetHorizontal - mProgressWidth / 2,
@@ -502,13 +759,46 @@ public class FloatingActionButton extends ImageButton {
     }
 
     void playShowAnimation() {
-        mHideAnimation.cancel();
-        startAnimation(mShowAnimation);
+        getAnimationPlayer().play(mShowAnimation, null);
     }
 
     void playHideAnimation() {
-        mShowAnimation.cancel();
-        startAnimation(mHideAnimation);
+        AnimationPlayer player = getAnimationPlayer();
+        // Cancelling a previous hide resets the flag
+        player.cancel();
+        mHiding = true;
+        player.play(mHideAnimation, mHideEndAction);
+    }
+
+    boolean isAnimationRunning() {
+        return mAnimationPlayer != null && mAnimationPlayer.isRunning();
+    }
+
+    /**
+     * @see AnimationPlayer#handOverLayer()
+     */
+    boolean handOverAnimationLayer() {
+        return mAnimationPlayer != null && mAnimationPlayer.handOverLayer();
+    }
+
+    private void cancelAnimation() {
+        if (mAnimationPlayer != null) {
+            mAnimationPlayer.cancel();
+        }
+    }
+
+    /**
+     * Changes the visibility of the button only, unlike {@link #setVisibility(int)}.
+     */
+    private void setButtonVisibility(int visibility) {
+        super.setVisibility(visibility);
+    }
+
+    private AnimationPlayer getAnimationPlayer() {
+        if (mAnimationPlayer == null) {
+            mAnimationPlayer = new AnimationPlayer(this);
+        }
+        return mAnimationPlayer;
     }
 
     OnClickListener getOnClickListener() {
@@ -519,7 +809,7 @@ public class FloatingActionButton extends ImageButton {
     public void setOnClickListener(final OnClickListener l) {
         super.setOnClickListener(l);
         mClickListener = l;
-        View label = (View) getTag(R.id.fab_label);
+        View label = mLabel;
         if (label != null) {
             label.setOnClickListener(new OnClickListener() {
                 @Override
@@ -533,7 +823,21 @@ public class FloatingActionButton extends ImageButton {
     }
 
     Label getLabelView() {
-        return (Label) getTag(R.id.fab_label);
+        return mLabel;
+    }
+
+    void setLabelView(Label label) {
+        mLabel = label;
+        // Kept for code that still looks the label up through the tag
+        setTag(R.id.fab_label, label);
+    }
+
+    FloatingMenuItem getMenuItem() {
+        return mMenuItem;
+    }
+
+    void setMenuItem(FloatingMenuItem item) {
+        mMenuItem = item;
     }
 
     void setColors(int colorNormal, int colorPressed, int colorRipple) {
@@ -573,7 +877,7 @@ public class FloatingActionButton extends ImageButton {
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (mClickListener != null && isEnabled()) {
-            Label label = (Label) getTag(R.id.fab_label);
+            Label label = mLabel;
             if (label == null) return super.onTouchEvent(event);
 
             int action = event.getAction();
@@ -601,7 +905,7 @@ public class FloatingActionButton extends ImageButton {
     public void setImageDrawable(Drawable drawable) {
         if (mIcon != drawable) {
             mIcon = drawable;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -610,7 +914,7 @@ public class FloatingActionButton extends ImageButton {
         Drawable drawable = getResources().getDrawable(resId);
         if (mIcon != drawable) {
             mIcon = drawable;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -630,7 +934,8 @@ public class FloatingActionButton extends ImageButton {
 
         if (mFabSize != size) {
             mFabSize = size;
-            updateBackground();
+            requestResize();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -645,7 +950,7 @@ public class FloatingActionButton extends ImageButton {
     public void setColorNormal(int color) {
         if (mColorNormal != color) {
             mColorNormal = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -660,7 +965,7 @@ public class FloatingActionButton extends ImageButton {
     public void setColorPressed(int color) {
         if (color != mColorPressed) {
             mColorPressed = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -675,7 +980,7 @@ public class FloatingActionButton extends ImageButton {
     public void setColorRipple(int color) {
         if (color != mColorRipple) {
             mColorRipple = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -690,19 +995,59 @@ public class FloatingActionButton extends ImageButton {
     public void setColorDisabled(int color) {
         if (color != mColorDisabled) {
             mColorDisabled = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
     public void setShowShadow(boolean show) {
         if (mShowShadow != show) {
             mShowShadow = show;
-            updateBackground();
+            updateOutlineShadow();
+            scheduleBackgroundUpdate();
         }
     }
 
     public boolean hasShadow() {
-        return !mUsingElevation && mShowShadow;
+        return !mUsingElevation && !isUsingOutlineShadow() && mShowShadow;
+    }
+
+    public int getShadowEngine() {
+        return mShadowEngine;
+    }
+
+    /**
+     * Sets how the shadow of the <b>FloatingActionButton</b> is drawn and invalidates its layout.
+     * <p>
+     * <b>API 21+</b>: {@link #SHADOW_ENGINE_ELEVATION} uses the native elevation with the button's
+     * outline so the shadow is drawn by the render thread. On older platforms the button falls
+     * back to the cached shadow bitmap.
+     *
+     * @param engine Accepted values: SHADOW_ENGINE_BITMAP, SHADOW_ENGINE_ELEVATION.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void setShadowEngine(int engine) {
+        if (engine != SHADOW_ENGINE_BITMAP && engine != SHADOW_ENGINE_ELEVATION) {
+            throw new IllegalArgumentException("Use SHADOW_ENGINE constants only!");
+        }
+
+        if (mShadowEngine != engine) {
+            mShadowEngine = engine;
+            updateOutlineShadow();
+            requestResize();
+            scheduleBackgroundUpdate();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateOutlineShadow() {
+        if (Util.hasLollipop() && !mUsingElevation && !mUsingElevationCompat) {
+            super.setElevation(isUsingOutlineShadow()
+                    ? Math.max(mShadowRadius, Math.abs(mShadowYOffset)) : 0);
+        }
+    }
+
+    private boolean isUsingOutlineShadow() {
+        return mShadowEngine == SHADOW_ENGINE_ELEVATION && Util.hasLollipop() && mShowShadow;
     }
 
     /**
@@ -714,8 +1059,8 @@ public class FloatingActionButton extends ImageButton {
         int shadowRadius = getResources().getDimensionPixelSize(dimenResId);
         if (mShadowRadius != shadowRadius) {
             mShadowRadius = shadowRadius;
-            requestLayout();
-            updateBackground();
+            requestResize();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -733,8 +1078,8 @@ public class FloatingActionButton extends ImageButton {
      */
     public void setShadowRadius(float shadowRadiusDp) {
         mShadowRadius = Util.dpToPx(getContext(), shadowRadiusDp);
-        requestLayout();
-        updateBackground();
+        requestResize();
+        scheduleBackgroundUpdate();
     }
 
     /**
@@ -746,8 +1091,8 @@ public class FloatingActionButton extends ImageButton {
         int shadowXOffset = getResources().getDimensionPixelSize(dimenResId);
         if (mShadowXOffset != shadowXOffset) {
             mShadowXOffset = shadowXOffset;
-            requestLayout();
-            updateBackground();
+            requestResize();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -765,8 +1110,8 @@ public class FloatingActionButton extends ImageButton {
      */
     public void setShadowXOffset(float shadowXOffsetDp) {
         mShadowXOffset = Util.dpToPx(getContext(), shadowXOffsetDp);
-        requestLayout();
-        updateBackground();
+        requestResize();
+        scheduleBackgroundUpdate();
     }
 
     /**
@@ -778,8 +1123,8 @@ public class FloatingActionButton extends ImageButton {
         int shadowYOffset = getResources().getDimensionPixelSize(dimenResId);
         if (mShadowYOffset != shadowYOffset) {
             mShadowYOffset = shadowYOffset;
-            requestLayout();
-            updateBackground();
+            requestResize();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -797,15 +1142,15 @@ public class FloatingActionButton extends ImageButton {
      */
     public void setShadowYOffset(float shadowYOffsetDp) {
         mShadowYOffset = Util.dpToPx(getContext(), shadowYOffsetDp);
-        requestLayout();
-        updateBackground();
+        requestResize();
+        scheduleBackgroundUpdate();
     }
 
     public void setShadowColorResource(int colorResId) {
         int shadowColor = getResources().getColor(colorResId);
         if (mShadowColor != shadowColor) {
             mShadowColor = shadowColor;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -816,7 +1161,7 @@ public class FloatingActionButton extends ImageButton {
     public void setShadowColor(int color) {
         if (mShadowColor != color) {
             mShadowColor = color;
-            updateBackground();
+            scheduleBackgroundUpdate();
         }
     }
 
@@ -826,7 +1171,7 @@ public class FloatingActionButton extends ImageButton {
      * @return true if <b>FloatingActionButton</b> is hidden, false otherwise
      */
     public boolean isHidden() {
-        return getVisibility() == INVISIBLE;
+        return getVisibility() == INVISIBLE || mHiding;
     }
 
     /**
@@ -836,6 +1181,8 @@ public class FloatingActionButton extends ImageButton {
      */
     public void show(boolean animate) {
         if (isHidden()) {
+            mHiding = false;
+            cancelAnimation();
             if (animate) {
                 playShowAnimation();
             }
@@ -852,8 +1199,10 @@ public class FloatingActionButton extends ImageButton {
         if (!isHidden()) {
             if (animate) {
                 playHideAnimation();
+            } else {
+                cancelAnimation();
+                super.setVisibility(INVISIBLE);
             }
-            super.setVisibility(INVISIBLE);
         }
     }
 
@@ -871,9 +1220,10 @@ public class FloatingActionButton extends ImageButton {
 
     public void setLabelText(String text) {
         mLabelText = text;
-        TextView labelView = getLabelView();
+        Label labelView = getLabelView();
         if (labelView != null) {
             labelView.setText(text);
+            notifyMenuContentChanged();
         }
     }
 
@@ -883,14 +1233,20 @@ public class FloatingActionButton extends ImageButton {
             return labelView.getVisibility();
         }
 
-        return -1;
+        return mLabelVisibility;
     }
 
+    /**
+     * Sets the visibility of the label. Labels created later, e.g. by a menu using
+     * {@code menu_labels_lazy}, get it when they are created.
+     */
     public void setLabelVisibility(int visibility) {
+        mLabelVisibility = visibility;
         Label labelView = getLabelView();
         if (labelView != null) {
             labelView.setVisibility(visibility);
             labelView.setHandleVisibilityChanges(visibility == VISIBLE);
+            notifyMenuContentChanged();
         }
     }
 
@@ -943,11 +1299,12 @@ public class FloatingActionButton extends ImageButton {
     /**
      * <p>Change the indeterminate mode for the progress bar. In indeterminate
      * mode, the progress is ignored and the progress bar shows an infinite
-     * animation instead.</p>
+     * animation instead. Must be called on the UI thread.</p>
      *
      * @param indeterminate true to enable the indeterminate mode
      */
-    public synchronized void setIndeterminate(boolean indeterminate) {
+    public void setIndeterminate(boolean indeterminate) {
+        mPendingProgress.set(NO_PENDING_PROGRESS);
         if (!indeterminate) {
             mCurrentProgress = 0.0f;
         }
@@ -955,10 +1312,11 @@ public class FloatingActionButton extends ImageButton {
         mProgressBarEnabled = indeterminate;
         mShouldUpdateButtonPosition = true;
         mProgressIndeterminate = indeterminate;
-        mLastTimeAnimated = SystemClock.uptimeMillis();
         setupProgressBounds();
 //        saveButtonOriginalPosition();
         updateBackground();
+        invalidate();
+        updateProgressTicker();
     }
 
     public synchronized int getMax() {
@@ -969,7 +1327,35 @@ public class FloatingActionButton extends ImageButton {
         mProgressMax = max;
     }
 
-    public synchronized void setProgress(int progress, boolean animate) {
+    /**
+     * Sets the progress from any thread. Only the latest value is kept: the first call after an
+     * update posts a single message to the UI thread, which applies whatever value is pending
+     * when it runs. Producers can call this at any rate, the button still redraws at most once
+     * per frame.
+     *
+     * @param progress the new progress, between 0 and {@link #getMax()}
+     * @param animate  if true - animates the progress change
+     */
+    public void postProgress(int progress, boolean animate) {
+        long value = (progress & 0xFFFFFFFFL) | (animate ? PENDING_PROGRESS_ANIMATE : 0);
+        if (mPendingProgress.getAndSet(value) == NO_PENDING_PROGRESS) {
+            // Only the first value since the last update posts, later ones replace it
+            mUiHandler.post(mApplyPendingProgressRunnable);
+        }
+    }
+
+    private void applyPendingProgress() {
+        long value = mPendingProgress.getAndSet(NO_PENDING_PROGRESS);
+        if (value != NO_PENDING_PROGRESS) {
+            setProgress((int) value, (value & PENDING_PROGRESS_ANIMATE) != 0);
+        }
+    }
+
+    /**
+     * Sets the progress. Must be called on the UI thread, use {@link #postProgress(int, boolean)}
+     * from other threads.
+     */
+    public void setProgress(int progress, boolean animate) {
         if (mProgressIndeterminate) return;
 
         mProgress = progress;
@@ -980,11 +1366,14 @@ public class FloatingActionButton extends ImageButton {
             return;
         }
 
-        mProgressBarEnabled = true;
-        mShouldUpdateButtonPosition = true;
-        setupProgressBounds();
-        saveButtonOriginalPosition();
-        updateBackground();
+        if (!mProgressBarEnabled) {
+            // Showing the bar insets the circle, later updates only redraw the progress arc
+            mProgressBarEnabled = true;
+            mShouldUpdateButtonPosition = true;
+            setupProgressBounds();
+            saveButtonOriginalPosition();
+            updateBackground();
+        }
 
         if (progress < 0) {
             progress = 0;
@@ -997,23 +1386,28 @@ public class FloatingActionButton extends ImageButton {
         }
 
         mTargetProgress = mProgressMax > 0 ? (progress / (float) mProgressMax) * 360 : 0;
-        mLastTimeAnimated = SystemClock.uptimeMillis();
 
         if (!animate) {
             mCurrentProgress = mTargetProgress;
         }
 
         invalidate();
+        updateProgressTicker();
     }
 
     public synchronized int getProgress() {
         return mProgressIndeterminate ? 0 : mProgress;
     }
 
-    public synchronized void hideProgress() {
+    /**
+     * Hides the progress bar. Must be called on the UI thread.
+     */
+    public void hideProgress() {
+        mPendingProgress.set(NO_PENDING_PROGRESS);
         mProgressBarEnabled = false;
         mShouldUpdateButtonPosition = true;
         updateBackground();
+        updateProgressTicker();
     }
 
     public synchronized void setShowProgressBackground(boolean show) {
@@ -1024,10 +1418,33 @@ public class FloatingActionButton extends ImageButton {
         return mShowProgressBackground;
     }
 
+    /**
+     * <b>API 21+</b>: Shows the indeterminate progress as an animated vector in the background
+     * of the button instead of redrawing the arc on every frame. From API 25 the platform runs
+     * the animation on the render thread, so the spinner keeps turning while the UI thread is
+     * busy. The spinner keeps the progress color, background color and width. Its arc is hidden
+     * behind the button circle, so the button colors must be opaque. Has no effect on older
+     * platforms.
+     *
+     * @param enabled true to animate the indeterminate spinner on the render thread
+     */
+    public void setProgressOnRenderThread(boolean enabled) {
+        if (mProgressOnRenderThread != enabled) {
+            mProgressOnRenderThread = enabled;
+            updateBackground();
+            invalidate();
+            updateProgressTicker();
+        }
+    }
+
+    public boolean isProgressOnRenderThread() {
+        return mProgressOnRenderThread;
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
         super.setEnabled(enabled);
-        Label label = (Label) getTag(R.id.fab_label);
+        Label label = mLabel;
         if (label != null) {
             label.setEnabled(enabled);
         }
@@ -1035,8 +1452,15 @@ public class FloatingActionButton extends ImageButton {
 
     @Override
     public void setVisibility(int visibility) {
+        // An explicit visibility wins over a running hide animation
+        mHiding = false;
+        cancelAnimation();
+        if ((visibility == GONE) != (getVisibility() == GONE)) {
+            // Gone buttons are left out when measuring the menu
+            notifyMenuContentChanged();
+        }
         super.setVisibility(visibility);
-        Label label = (Label) getTag(R.id.fab_label);
+        Label label = mLabel;
         if (label != null) {
             label.setVisibility(visibility);
         }
@@ -1073,7 +1497,7 @@ public class FloatingActionButton extends ImageButton {
     }
 
     public void showButtonInMenu(boolean animate) {
-        if (getVisibility() == VISIBLE) return;
+        if (getVisibility() == VISIBLE && !isHidden()) return;
 
         setVisibility(INVISIBLE);
         show(animate);
@@ -1087,79 +1511,170 @@ public class FloatingActionButton extends ImageButton {
      * Set the label's background colors
      */
     public void setLabelColors(int colorNormal, int colorPressed, int colorRipple) {
+        mHasLabelColors = true;
+        mLabelColorNormal = colorNormal;
+        mLabelColorPressed = colorPressed;
+        mLabelColorRipple = colorRipple;
         Label label = getLabelView();
-
-        int left = label.getPaddingLeft();
-        int top = label.getPaddingTop();
-        int right = label.getPaddingRight();
-        int bottom = label.getPaddingBottom();
-
-        label.setColors(colorNormal, colorPressed, colorRipple);
-        label.updateBackground();
-        label.setPadding(left, top, right, bottom);
+        if (label != null) {
+            label.setColors(colorNormal, colorPressed, colorRipple);
+            label.scheduleBackgroundUpdate();
+        }
     }
 
     public void setLabelTextColor(int color) {
-        getLabelView().setTextColor(color);
+        setLabelTextColor(ColorStateList.valueOf(color));
     }
 
     public void setLabelTextColor(ColorStateList colors) {
-        getLabelView().setTextColor(colors);
+        mLabelTextColors = colors;
+        Label label = getLabelView();
+        if (label != null) {
+            label.setTextColor(colors);
+        }
     }
 
-    private class CircleDrawable extends ShapeDrawable {
+    /**
+     * Applies the label colors and visibility set on this button to a label created for it
+     * afterwards.
+     */
+    void applyLabelOverrides(Label label) {
+        if (mHasLabelColors) {
+            label.setColors(mLabelColorNormal, mLabelColorPressed, mLabelColorRipple);
+            label.scheduleBackgroundUpdate();
+        }
+        if (mLabelTextColors != null) {
+            label.setTextColor(mLabelTextColors);
+        }
+        if (mLabelVisibility != -1) {
+            label.setVisibility(mLabelVisibility);
+            label.setHandleVisibilityChanges(mLabelVisibility == VISIBLE);
+        }
+    }
 
-        private int circleInsetHorizontal;
-        private int circleInsetVertical;
+    /**
+     * Keeps the layer order fixed (shadow, progress, fill, icon) so that the layers and their
+     * insets can be swapped without rebuilding the drawable.
+     */
+    private static class BackgroundDrawable extends LayerDrawable {
+
+        private static final int LAYER_PROGRESS = 1;
+        private static final int LAYER_FILL = 2;
+        private static final int LAYER_ICON = 3;
+
+        private int mProgressInsetHorizontal = -1;
+        private int mProgressInsetVertical = -1;
+        private int mFillInsetHorizontal = -1;
+        private int mFillInsetVertical = -1;
+        private int mIconInsetHorizontal = -1;
+        private int mIconInsetVertical = -1;
+
+        private BackgroundDrawable(Drawable[] layers) {
+            super(layers);
+            setId(LAYER_PROGRESS, LAYER_PROGRESS);
+            setId(LAYER_FILL, LAYER_FILL);
+            setId(LAYER_ICON, LAYER_ICON);
+        }
 
-        private CircleDrawable() {
+        private void setProgress(Drawable progress) {
+            setDrawableByLayerId(LAYER_PROGRESS, progress);
+            onBoundsChange(getBounds());
         }
 
-        private CircleDrawable(Shape s) {
-            super(s);
-            circleInsetHorizontal = hasShadow() ? mShadowRadius + Math.abs(mShadowXOffset) : 0;
-            circleInsetVertical = hasShadow() ? mShadowRadius + Math.abs(mShadowYOffset) : 0;
+        private void setFill(Drawable fill) {
+            setDrawableByLayerId(LAYER_FILL, fill);
+            fill.setState(getState());
+            onBoundsChange(getBounds());
+        }
 
-            if (mProgressBarEnabled) {
-                circleInsetHorizontal += mProgressWidth;
-                circleInsetVertical += mProgressWidth;
-            }
+        private void setIcon(Drawable icon) {
+            setDrawableByLayerId(LAYER_ICON, icon);
+            onBoundsChange(getBounds());
         }
 
-        @Override
-        public void draw(Canvas canvas) {
-            setBounds(circleInsetHorizontal, circleInsetVertical, calculateMeasuredWidth()
-                    - circleInsetHorizontal, calculateMeasuredHeight() - circleInsetVertical);
-            super.draw(canvas);
+        private void setInsets(int progressHorizontal, int progressVertical, int fillHorizontal,
+                               int fillVertical, int iconHorizontal, int iconVertical) {
+            if (mProgressInsetHorizontal == progressHorizontal && mProgressInsetVertical == progressVertical
+                    && mFillInsetHorizontal == fillHorizontal && mFillInsetVertical == fillVertical
+                    && mIconInsetHorizontal == iconHorizontal && mIconInsetVertical == iconVertical) {
+                return;
+            }
+
+            mProgressInsetHorizontal = progressHorizontal;
+            mProgressInsetVertical = progressVertical;
+            mFillInsetHorizontal = fillHorizontal;
+            mFillInsetVertical = fillVertical;
+            mIconInsetHorizontal = iconHorizontal;
+            mIconInsetVertical = iconVertical;
+            setLayerInset(LAYER_PROGRESS, progressHorizontal, progressVertical, progressHorizontal, progressVertical);
+            setLayerInset(LAYER_FILL, fillHorizontal, fillVertical, fillHorizontal, fillVertical);
+            setLayerInset(LAYER_ICON, iconHorizontal, iconVertical, iconHorizontal, iconVertical);
+            onBoundsChange(getBounds());
         }
     }
 
     private class Shadow extends Drawable {
 
-        private Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private Paint mErase = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private float mRadius;
+        private Bitmap mBitmap;
+        private ShadowCache.CircleKey mKey;
+        private float mKeyRadius;
+        private int mKeyShadowRadius;
+        private int mKeyShadowYOffset;
+        private int mKeyShadowColor;
 
         private Shadow() {
-            this.init();
         }
 
-        private void init() {
-            setLayerType(LAYER_TYPE_SOFTWARE, null);
-            mPaint.setStyle(Paint.Style.FILL);
-            mPaint.setColor(mColorNormal);
-            mErase.setXfermode(PORTER_DUFF_CLEAR);
-            mPaint.setShadowLayer(mShadowRadius, 0, mShadowYOffset,mShadowColor);
-            mRadius = getCircleSize() / 2.2f; // We need shadow to has same width as button.
+        /**
+         * Requests a new bitmap only when the shadow geometry or color has changed since the
+         * last call.
+         */
+        private void update() {
+            if (!hasShadow()) return;
+
+            float radius = getCircleSize() / 2.2f; // We need shadow to has same width as button.
             if (mProgressBarEnabled && mShowProgressBackground) {
-                mRadius += mProgressWidth;
+                radius += mProgressWidth;
+            }
+
+            if (mKey != null && mKeyRadius == radius && mKeyShadowRadius == mShadowRadius
+                    && mKeyShadowYOffset == mShadowYOffset && mKeyShadowColor == mShadowColor) {
+                return;
+            }
+            mKeyRadius = radius;
+            mKeyShadowRadius = mShadowRadius;
+            mKeyShadowYOffset = mShadowYOffset;
+            mKeyShadowColor = mShadowColor;
+
+            final ShadowCache.CircleKey key = new ShadowCache.CircleKey(radius, mShadowRadius, 0,
+                    mShadowYOffset, mShadowColor, getResources().getDisplayMetrics().density);
+            mKey = key;
+            if (isInEditMode()) {
+                mBitmap = ShadowCache.getNow(key);
+                return;
+            }
+
+            Bitmap bitmap = ShadowCache.get(key, new ShadowCache.Listener() {
+                @Override
+                public void onShadowReady(Bitmap bitmap) {
+                    // Ignore bitmaps of keys that were replaced while rendering
+                    if (mKey == key) {
+                        mBitmap = bitmap;
+                        invalidateSelf();
+                    }
+                }
+            });
+            if (bitmap != null) {
+                mBitmap = bitmap;
             }
         }
 
         @Override
         public void draw(Canvas canvas) {
-            canvas.drawCircle(calculateCenterX(), calculateCenterY(), mRadius, mPaint);
-            canvas.drawCircle(calculateCenterX(), calculateCenterY(), mRadius, mErase);
+            if (mBitmap == null || !hasShadow()) return;
+
+            canvas.drawBitmap(mBitmap, calculateCenterX() - mBitmap.getWidth() / 2,
+                    calculateCenterY() - mBitmap.getHeight() / 2, null);
         }
 
         @Override
@@ -1177,4 +1692,4 @@ public class FloatingActionButton extends ImageButton {
             return 0;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -2,14 +2,16 @@ package com.github.clans.fab;
 
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
-import android.os.Handler;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -19,17 +21,31 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.view.animation.AnticipateInterpolator;
 import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.ImageView;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
 
+    /**
+     * Buttons, labels and the menu icon are kept on hardware layers from the start of opening
+     * or closing until the last of them finished animating.
+     */
+    public static final int LAYERS_WHOLE_TRANSITION = 0;
+    /**
+     * Every view is on a hardware layer only while its own show or hide animation plays.
+     */
+    public static final int LAYERS_PER_ANIMATION = 1;
+
     private static final int ANIMATION_DURATION = 300;
     private static final float CLOSED_PLUS_ROTATION = 0f;
     private static final float OPENED_PLUS_ROTATION_LEFT = -90f - 45f;
@@ -38,6 +54,9 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     private static final int OPEN_DOWN = 1;
     private static final int LABELS_POSITION_LEFT = 0;
     private static final int LABELS_POSITION_RIGHT = 1;
+    private static final int PENDING_HIDE_NONE = 0;
+    private static final int PENDING_HIDE_MENU = 1;
+    private static final int PENDING_HIDE_MENU_BUTTON = 2;
 
     private AnimatorSet mOpenAnimatorSet = new AnimatorSet();
     private AnimatorSet mCloseAnimatorSet = new AnimatorSet();
@@ -48,9 +67,112 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     private int mLabelsMargin = Util.dpToPx(getContext(), 0f);
     private int mLabelsVerticalOffset = Util.dpToPx(getContext(), 0f);
     private int mButtonsCount;
+    private Label[] mLabels = new Label[0];
     private boolean mMenuOpened;
     private boolean mIsMenuOpening;
-    private Handler mUiHandler = new Handler();
+    private int mPendingHide = PENDING_HIDE_NONE;
+    private boolean mPendingHideAnimate;
+    private final MenuTimeline mTimeline = new MenuTimeline(new MenuTimeline.Host() {
+        @Override
+        public int getTimelineStepCount() {
+            int count = 0;
+            for (int i = 0; i < getChildCount(); i++) {
+                View child = getChildAt(i);
+                if (child instanceof FloatingActionButton && child.getVisibility() != GONE) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void onTimelineStep(int position, boolean show, boolean animate) {
+            FloatingActionButton fab = getTimelineButton(position);
+            if (fab == null) return;
+
+            Label label = fab.getLabelView();
+            if (show) {
+                if (fab != mMenuButton) {
+                    fab.show(animate);
+                }
+                if (label != null && label.isHandleVisibilityChanges()) {
+                    label.show(animate);
+                }
+            } else {
+                if (fab != mMenuButton) {
+                    fab.hide(animate);
+                }
+                if (label != null && label.isHandleVisibilityChanges()) {
+                    label.hide(animate);
+                }
+            }
+        }
+
+        @Override
+        public void onTimelineFinished(boolean opened) {
+            mMenuOpened = opened;
+            if (mToggleListener != null) {
+                mToggleListener.onMenuToggle(opened);
+            }
+            runPendingHide(opened);
+        }
+    });
+    private final MenuPrewarmer mPrewarmer = new MenuPrewarmer(new MenuPrewarmer.Host() {
+        @Override
+        public boolean onPrewarmStep() {
+            return prewarmStep();
+        }
+    });
+    private int mPrewarmPosition;
+    private final Runnable mHideMenuAction = new Runnable() {
+        @Override
+        public void run() {
+            if (mMenuHiding) {
+                mMenuHiding = false;
+                setMenuVisibility(INVISIBLE);
+            }
+        }
+    };
+    private final Runnable mHideImageToggleAction = new Runnable() {
+        @Override
+        public void run() {
+            if (isMenuButtonHidden()) {
+                mImageToggle.setVisibility(INVISIBLE);
+            }
+        }
+    };
+    private final Map<Long, FloatingActionButton> mItemButtons = new HashMap<>();
+    private final List<FloatingActionButton> mRecycledButtons = new ArrayList<>();
+    private FloatingMenuItemClickListener mMenuItemClickListener;
+    private final List<FloatingMenuItem> mMenuItems = new ArrayList<>();
+    private boolean mItemsScrollable;
+    private MenuItemScroller mItemScroller;
+    private int mFirstBoundItem;
+    private int mLastBoundItem;
+    private int mLaidOutItemScroll;
+    private int mItemExtent;
+    private int mItemRegionHeight;
+    private int mItemRegionTop;
+    private int mItemRegionBottom;
+    private boolean mItemWindowUpdatePending;
+    private final Runnable mUpdateItemWindowRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mItemWindowUpdatePending = false;
+            updateItemScrollRange();
+            updateItemWindow(false);
+        }
+    };
+    private final OnClickListener mItemClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            FloatingActionButton fab = v instanceof Label ? ((Label) v).getFab() : (FloatingActionButton) v;
+            FloatingMenuItem item = fab != null ? fab.getMenuItem() : null;
+            if (item != null && mMenuItemClickListener != null) {
+                mMenuItemClickListener.onMenuItemClick(item);
+            }
+        }
+    };
     private int mLabelsShowAnimation;
     private int mLabelsHideAnimation;
     private int mLabelsPaddingTop = Util.dpToPx(getContext(), 4f);
@@ -89,18 +211,37 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     private Animation mMenuButtonHideAnimation;
     private Animation mImageToggleShowAnimation;
     private Animation mImageToggleHideAnimation;
+    private AnimationPlayer mImageTogglePlayer;
+    private AnimationPlayer mMenuPlayer;
+    private boolean mMenuHiding;
+    private int mTransitionLayers;
+    private final List<View> mLayeredChildren = new ArrayList<>();
+    private final FrameTicker mLayerTicker = new FrameTicker(new FrameTicker.Callback() {
+        @Override
+        public boolean onTick(long deltaMillis) {
+            if (mTimeline.isRunning() || isAnyLayeredChildAnimating()) return true;
+
+            releaseTransitionLayers();
+            return false;
+        }
+    });
     private boolean mIsMenuButtonAnimationRunning;
     private boolean mIsSetClosedOnTouchOutside;
     private boolean animationInProgress = false;
     private int mOpenDirection;
     private FloatingMenuToggleListener mToggleListener;
-    private ValueAnimator mShowBackgroundAnimator;
-    private ValueAnimator mHideBackgroundAnimator;
+    private MenuScrim mScrim;
     private int mBackgroundColor;
     private int mLabelsPosition;
     private Context mLabelsContext;
     private String mMenuLabelText;
     private boolean mUsingMenuLabel;
+    private boolean mLabelsDeferred;
+    private int mShadowEngine;
+    private int mContentVersion;
+    private int mMeasuredVersion = -1;
+    private int mMeasuredWidthSpec;
+    private int mMeasuredHeightSpec;
 
     public FloatingActionMenu(Context context) {
         this(context, null);
@@ -157,16 +298,20 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         mLabelsMaxLines = attr.getInt(R.styleable.FloatingActionMenu_menu_labels_maxLines, -1);
         mMenuFabSize = attr.getInt(R.styleable.FloatingActionMenu_menu_fab_size, FloatingActionButton.SIZE_NORMAL);
         mLabelsStyle = attr.getResourceId(R.styleable.FloatingActionMenu_menu_labels_style, 0);
+        mLabelsDeferred = attr.getBoolean(R.styleable.FloatingActionMenu_menu_labels_lazy, false);
         String customFont = attr.getString(R.styleable.FloatingActionMenu_menu_labels_customFont);
         try {
             if (!TextUtils.isEmpty(customFont)) {
-                mCustomTypefaceFromFont = Typeface.createFromAsset(getContext().getAssets(), customFont);
+                mCustomTypefaceFromFont = TypefaceCache.get(getContext(), customFont);
             }
         } catch (RuntimeException ex) {
             throw new IllegalArgumentException("Unable to load specified custom font: " + customFont, ex);
         }
         mOpenDirection = attr.getInt(R.styleable.FloatingActionMenu_menu_openDirection, OPEN_UP);
         mBackgroundColor = attr.getColor(R.styleable.FloatingActionMenu_menu_backgroundColor, Color.TRANSPARENT);
+        mShadowEngine = attr.getInt(R.styleable.FloatingActionMenu_menu_shadowEngine, FloatingActionButton.SHADOW_ENGINE_BITMAP);
+        mItemsScrollable = attr.getBoolean(R.styleable.FloatingActionMenu_menu_itemsScrollable, false);
+        mTransitionLayers = attr.getInt(R.styleable.FloatingActionMenu_menu_transitionLayers, LAYERS_WHOLE_TRANSITION);
 
         if (attr.hasValue(R.styleable.FloatingActionMenu_menu_fab_label)) {
             mUsingMenuLabel = true;
@@ -182,46 +327,27 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         mCloseInterpolator = new AnticipateInterpolator();
         mLabelsContext = new ContextThemeWrapper(getContext(), mLabelsStyle);
 
-        initBackgroundDimAnimation();
         createMenuButton();
+        initBackgroundDimAnimation();
         initMenuButtonAnimations(attr);
         attr.recycle();
     }
 
     private void initMenuButtonAnimations(TypedArray attr) {
         int showResId = attr.getResourceId(R.styleable.FloatingActionMenu_menu_fab_show_animation, R.anim.fab_scale_up);
-        setMenuButtonShowAnimation(AnimationUtils.loadAnimation(getContext(), showResId));
-        mImageToggleShowAnimation = AnimationUtils.loadAnimation(getContext(), showResId);
+        setMenuButtonShowAnimation(AnimationTemplates.load(getContext(), showResId));
+        mImageToggleShowAnimation = AnimationTemplates.load(getContext(), showResId);
         int hideResId = attr.getResourceId(R.styleable.FloatingActionMenu_menu_fab_hide_animation, R.anim.fab_scale_down);
-        setMenuButtonHideAnimation(AnimationUtils.loadAnimation(getContext(), hideResId));
-        mImageToggleHideAnimation = AnimationUtils.loadAnimation(getContext(), hideResId);
+        setMenuButtonHideAnimation(AnimationTemplates.load(getContext(), hideResId));
+        mImageToggleHideAnimation = AnimationTemplates.load(getContext(), hideResId);
     }
 
     private void initBackgroundDimAnimation() {
-        final int maxAlpha = Color.alpha(mBackgroundColor);
-        final int red = Color.red(mBackgroundColor);
-        final int green = Color.green(mBackgroundColor);
-        final int blue = Color.blue(mBackgroundColor);
-
-        mShowBackgroundAnimator = ValueAnimator.ofInt(0, maxAlpha);
-        mShowBackgroundAnimator.setDuration(ANIMATION_DURATION);
-        mShowBackgroundAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                Integer alpha = (Integer) animation.getAnimatedValue();
-                setBackgroundColor(Color.argb(alpha, red, green, blue));
-            }
-        });
+        if (!isBackgroundEnabled()) return;
 
-        mHideBackgroundAnimator = ValueAnimator.ofInt(maxAlpha, 0);
-        mHideBackgroundAnimator.setDuration(ANIMATION_DURATION);
-        mHideBackgroundAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                Integer alpha = (Integer) animation.getAnimatedValue();
-                setBackgroundColor(Color.argb(alpha, red, green, blue));
-            }
-        });
+        mScrim = new MenuScrim(getContext(), mBackgroundColor, ANIMATION_DURATION);
+        addView(mScrim);
+        setChildrenDrawingOrderEnabled(true);
     }
 
     private boolean isBackgroundEnabled() {
@@ -248,9 +374,11 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         mMenuButton.mShadowColor = mMenuShadowColor;
         mMenuButton.mFabSize = mMenuFabSize;
         mMenuButton.updateBackground();
+        mMenuButton.setShadowEngine(mShadowEngine);
         mMenuButton.setLabelText(mMenuLabelText);
 
         mImageToggle = new ImageView(getContext());
+        mImageTogglePlayer = new AnimationPlayer(mImageToggle);
         mImageToggle.setImageDrawable(mIcon);
 
         addView(mMenuButton, super.generateDefaultLayoutParams());
@@ -296,6 +424,13 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mMeasuredVersion == mContentVersion && mMeasuredWidthSpec == widthMeasureSpec
+                && mMeasuredHeightSpec == heightMeasureSpec) {
+            // Children keep their measurements from the previous pass
+            setMeasuredDimension(getMeasuredWidth(), getMeasuredHeight());
+            return;
+        }
+
         int width = 0;
         int height = 0;
         mMaxButtonWidth = 0;
@@ -321,13 +456,11 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
             usedWidth += child.getMeasuredWidth();
             height += child.getMeasuredHeight();
 
-            Label label = (Label) child.getTag(R.id.fab_label);
+            Label label = getLabelAt(i);
             if (label != null) {
-                int labelOffset = (mMaxButtonWidth - child.getMeasuredWidth()) / (mUsingMenuLabel ? 1 : 2);
-                int labelUsedWidth = child.getMeasuredWidth() + label.calculateShadowWidth() + mLabelsMargin + labelOffset;
-                measureChildWithMargins(label, widthMeasureSpec, labelUsedWidth, heightMeasureSpec, 0);
+                measureLabel(child, label, widthMeasureSpec, heightMeasureSpec);
                 usedWidth += label.getMeasuredWidth();
-                maxLabelWidth = Math.max(maxLabelWidth, usedWidth + labelOffset);
+                maxLabelWidth = Math.max(maxLabelWidth, usedWidth + getLabelOffset(child));
             }
         }
 
@@ -341,11 +474,79 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         if (getLayoutParams().height == LayoutParams.MATCH_PARENT) {
             height = getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec);
         }
+        if (mItemsScrollable && MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            height = Math.min(height, MeasureSpec.getSize(heightMeasureSpec));
+            measureItemRegion(MeasureSpec.getSize(heightMeasureSpec));
+        }
         setMeasuredDimension(width, height);
+
+        mMeasuredVersion = mContentVersion;
+        mMeasuredWidthSpec = widthMeasureSpec;
+        mMeasuredHeightSpec = heightMeasureSpec;
+    }
+
+    /**
+     * Records the space available to the items and the size of one item, and updates the bound
+     * items on the next frame if they changed. Views are not added or removed while measuring.
+     */
+    private void measureItemRegion(int availableHeight) {
+        int regionHeight = Math.max(0, availableHeight - getPaddingTop() - getPaddingBottom()
+                - mMenuButton.getMeasuredHeight());
+        int itemExtent = mItemExtent;
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child == mMenuButton || child == mImageToggle || child.getVisibility() == GONE) continue;
+
+            // Layout puts twice the spacing between buttons when opening up
+            itemExtent = child.getMeasuredHeight() + mButtonSpacing * (mOpenDirection == OPEN_UP ? 2 : 1);
+            break;
+        }
+
+        if (regionHeight != mItemRegionHeight || itemExtent != mItemExtent) {
+            mItemRegionHeight = regionHeight;
+            mItemExtent = itemExtent;
+            scheduleItemWindowUpdate();
+        }
+    }
+
+    private void measureLabel(View child, Label label, int widthMeasureSpec, int heightMeasureSpec) {
+        int labelUsedWidth = child.getMeasuredWidth() + label.calculateShadowWidth() + mLabelsMargin
+                + getLabelOffset(child);
+        measureChildWithMargins(label, widthMeasureSpec, labelUsedWidth, heightMeasureSpec, 0);
+    }
+
+    private int getLabelOffset(View child) {
+        return (mMaxButtonWidth - child.getMeasuredWidth()) / (mUsingMenuLabel ? 1 : 2);
+    }
+
+    /**
+     * Makes the next {@link #onMeasure(int, int)} measure the children again. Bumped when buttons
+     * are added or removed, and by the buttons when their size, label text or visibility changes.
+     * Other layout requests reuse the previous measurements.
+     */
+    void invalidateMeasureCache() {
+        mContentVersion++;
+    }
+
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        invalidateMeasureCache();
+        super.setPadding(left, top, right, bottom);
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // Configuration changes force a layout without requesting one
+        invalidateMeasureCache();
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mScrim != null) {
+            mScrim.layoutInParent(this);
+        }
+
         int buttonsHorizontalCenter = mLabelsPosition == LABELS_POSITION_LEFT
                 ? r - l - mMaxButtonWidth / 2 - getPaddingRight()
                 : mMaxButtonWidth / 2 + getPaddingLeft();
@@ -369,6 +570,12 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
                 ? menuButtonTop + mMenuButton.getMeasuredHeight() + mButtonSpacing
                 : menuButtonTop;
 
+        mItemRegionTop = openUp ? getPaddingTop() : menuButtonTop + mMenuButton.getMeasuredHeight();
+        mItemRegionBottom = openUp ? menuButtonTop : b - t - getPaddingBottom();
+        boolean scrollItems = isItemScrollActive();
+        int direction = openUp ? -1 : 1;
+        boolean itemsScrolled = false;
+
         for (int i = mButtonsCount - 1; i >= 0; i--) {
             View child = getChildAt(i);
 
@@ -378,19 +585,24 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
 
             if (fab.getVisibility() == GONE) continue;
 
+            if (scrollItems && fab != mMenuButton) {
+                // Bound items come first, the items before them are not materialized
+                if (!itemsScrolled) {
+                    itemsScrolled = true;
+                    mLaidOutItemScroll = mItemScroller.getOffset();
+                    nextY += direction * (mFirstBoundItem * mItemExtent - mLaidOutItemScroll);
+                }
+            }
+
             int childX = buttonsHorizontalCenter - fab.getMeasuredWidth() / 2;
             int childY = openUp ? nextY - fab.getMeasuredHeight() - mButtonSpacing : nextY;
 
             if (fab != mMenuButton) {
                 fab.layout(childX, childY, childX + fab.getMeasuredWidth(),
                         childY + fab.getMeasuredHeight());
-
-                if (!mIsMenuOpening) {
-                    fab.hide(false);
-                }
             }
 
-            View label = (View) fab.getTag(R.id.fab_label);
+            View label = getLabelAt(i);
             if (label != null) {
                 int labelsOffset = (mUsingMenuLabel ? mMaxButtonWidth / 2 : fab.getMeasuredWidth() / 2) + mLabelsMargin;
                 int labelXNearButton = mLabelsPosition == LABELS_POSITION_LEFT
@@ -413,10 +625,6 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
                         - label.getMeasuredHeight()) / 2;
 
                 label.layout(labelLeft, labelTop, labelRight, labelTop + label.getMeasuredHeight());
-
-                if (!mIsMenuOpening) {
-                    label.setVisibility(INVISIBLE);
-                }
             }
 
             nextY = openUp
@@ -435,8 +643,13 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         bringChildToFront(mMenuButton);
         bringChildToFront(mImageToggle);
         mButtonsCount = getChildCount();
+        if (mScrim != null) {
+            bringChildToFront(mScrim);
+            mButtonsCount--;
+        }
         setAnimationInProgressListener();
         createLabels();
+        updateLabelIndex();
     }
 
     private void createLabels() {
@@ -445,9 +658,11 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
 
             final FloatingActionButton fab = (FloatingActionButton) getChildAt(i);
 
-            if (fab.getTag(R.id.fab_label) != null) continue;
+            if (fab.getLabelView() != null) continue;
 
-            addLabel(fab);
+            fab.setShadowEngine(mShadowEngine);
+            attachLabel(fab);
+            syncItemVisibility(fab);
 
             if (fab == mMenuButton) {
                 mMenuButton.setOnClickListener(new OnClickListener() {
@@ -460,6 +675,16 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         }
     }
 
+    /**
+     * Creates the label of the button right away, unless label creation is deferred until the
+     * menu is first opened.
+     */
+    private void attachLabel(FloatingActionButton fab) {
+        if (!mLabelsDeferred) {
+            addLabel(fab);
+        }
+    }
+
     private void addLabel(FloatingActionButton fab) {
         String text = fab.getLabelText();
 
@@ -468,8 +693,8 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         final Label label = new Label(mLabelsContext);
         label.setClickable(true);
         label.setFab(fab);
-        label.setShowAnimation(AnimationUtils.loadAnimation(getContext(), mLabelsShowAnimation));
-        label.setHideAnimation(AnimationUtils.loadAnimation(getContext(), mLabelsHideAnimation));
+        label.setShowAnimation(AnimationTemplates.load(getContext(), mLabelsShowAnimation));
+        label.setHideAnimation(AnimationTemplates.load(getContext(), mLabelsHideAnimation));
 
         if (mLabelsStyle > 0) {
             label.setTextAppearance(getContext(), mLabelsStyle);
@@ -509,8 +734,9 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         }
         label.setText(text);
         label.setOnClickListener(fab.getOnClickListener());
+        fab.applyLabelOverrides(label);
         addView(label);
-        fab.setTag(R.id.fab_label, label);
+        fab.setLabelView(label);
     }
 
     private void setLabelEllipsize(Label label) {
@@ -551,13 +777,31 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         return p instanceof MarginLayoutParams;
     }
 
+    @Override
+    public void addView(View child, int index, LayoutParams params) {
+        // Keeps the scrim the last child
+        int scrimIndex = mScrim != null && child != mScrim ? indexOfChild(mScrim) : -1;
+        if (scrimIndex >= 0 && (index < 0 || index > scrimIndex)) {
+            index = scrimIndex;
+        }
+        super.addView(child, index, params);
+    }
+
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        // Only enabled with a scrim, which is the last child but drawn below all others
+        return i == 0 ? childCount - 1 : i - 1;
+    }
+
     private void hideMenuButtonWithImage(boolean animate) {
         if (!isMenuButtonHidden()) {
             mMenuButton.hide(animate);
             if (animate) {
-                mImageToggle.startAnimation(mImageToggleHideAnimation);
+                mImageTogglePlayer.play(mImageToggleHideAnimation, mHideImageToggleAction);
+            } else {
+                mImageTogglePlayer.cancel();
+                mImageToggle.setVisibility(INVISIBLE);
             }
-            mImageToggle.setVisibility(INVISIBLE);
             mIsMenuButtonAnimationRunning = false;
         }
     }
@@ -565,15 +809,28 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     private void showMenuButtonWithImage(boolean animate) {
         if (isMenuButtonHidden()) {
             mMenuButton.show(animate);
+            mImageTogglePlayer.cancel();
             if (animate) {
-                mImageToggle.startAnimation(mImageToggleShowAnimation);
+                mImageTogglePlayer.play(mImageToggleShowAnimation, null);
             }
             mImageToggle.setVisibility(VISIBLE);
         }
     }
 
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        if (isItemScrollActive() && mIsMenuOpening && mItemScroller.onInterceptTouchEvent(event)) {
+            return true;
+        }
+        return super.onInterceptTouchEvent(event);
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (isItemScrollActive() && mIsMenuOpening && mItemScroller.onTouchEvent(event)) {
+            return true;
+        }
+
         if (mIsSetClosedOnTouchOutside) {
             boolean handled = false;
             switch (event.getAction()) {
@@ -599,7 +856,7 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     /* ===== API methods ===== */
 
     public void toggle(boolean animate) {
-        if (isOpened()) {
+        if (mIsMenuOpening) {
             close(animate);
         } else {
             open(animate);
@@ -607,9 +864,11 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     }
 
     public void open(final boolean animate) {
-        if (!isOpened()) {
+        if (!mIsMenuOpening) {
+            prefetchLabels();
+
             if (isBackgroundEnabled()) {
-                mShowBackgroundAnimator.start();
+                mScrim.show(animate);
             }
 
             if (mIconAnimated) {
@@ -621,51 +880,16 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
                 }
             }
 
-            int delay = 0;
-            int counter = 0;
             mIsMenuOpening = true;
-            for (int i = getChildCount() - 1; i >= 0; i--) {
-                View child = getChildAt(i);
-                if (child instanceof FloatingActionButton && child.getVisibility() != GONE) {
-                    counter++;
-
-                    final FloatingActionButton fab = (FloatingActionButton) child;
-                    mUiHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (isOpened()) return;
-
-                            if (fab != mMenuButton) {
-                                fab.show(animate);
-                            }
-
-                            Label label = (Label) fab.getTag(R.id.fab_label);
-                            if (label != null && label.isHandleVisibilityChanges()) {
-                                label.show(animate);
-                            }
-                        }
-                    }, delay);
-                    delay += mAnimationDelayPerItem;
-                }
-            }
-
-            mUiHandler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    mMenuOpened = true;
-
-                    if (mToggleListener != null) {
-                        mToggleListener.onMenuToggle(true);
-                    }
-                }
-            }, ++counter * mAnimationDelayPerItem);
+            promoteTransitionLayers(animate);
+            mTimeline.start(true, animate, mAnimationDelayPerItem);
         }
     }
 
     public void close(final boolean animate) {
-        if (isOpened()) {
+        if (mIsMenuOpening) {
             if (isBackgroundEnabled()) {
-                mHideBackgroundAnimator.start();
+                mScrim.hide(animate);
             }
 
             if (mIconAnimated) {
@@ -677,43 +901,145 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
                 }
             }
 
-            int delay = 0;
-            int counter = 0;
             mIsMenuOpening = false;
-            for (int i = 0; i < getChildCount(); i++) {
-                View child = getChildAt(i);
-                if (child instanceof FloatingActionButton && child.getVisibility() != GONE) {
-                    counter++;
-
-                    final FloatingActionButton fab = (FloatingActionButton) child;
-                    mUiHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (!isOpened()) return;
-
-                            if (fab != mMenuButton) {
-                                fab.hide(animate);
-                            }
-
-                            Label label = (Label) fab.getTag(R.id.fab_label);
-                            if (label != null && label.isHandleVisibilityChanges()) {
-                                label.hide(animate);
-                            }
-                        }
-                    }, delay);
-                    delay += mAnimationDelayPerItem;
+            promoteTransitionLayers(animate);
+            mTimeline.start(false, animate, mAnimationDelayPerItem);
+        }
+    }
+
+    /**
+     * Creates the labels of all buttons if the menu uses {@code menu_labels_lazy} and they were
+     * not created yet. Opening the menu does this as well, calling it while the app is idle
+     * takes that work off the first open. Buttons added afterwards get their label right away.
+     */
+    public void prefetchLabels() {
+        if (!mLabelsDeferred) return;
+
+        mLabelsDeferred = false;
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (!(child instanceof FloatingActionButton)) continue;
+
+            FloatingActionButton fab = (FloatingActionButton) child;
+            if (fab.getLabelView() != null) continue;
+
+            addLabel(fab);
+            syncItemVisibility(fab);
+        }
+        updateLabelIndex();
+        invalidateMeasureCache();
+    }
+
+    /**
+     * Does the work of the first {@link #open(boolean)} ahead of time, in slices of a few
+     * milliseconds while the UI thread is idle. Lazy labels are created and the text of every
+     * label is measured, so the first open only has to run the animations. Prewarming stops
+     * when the menu is detached from the window.
+     *
+     * @param listener notified when everything is done, may be null
+     */
+    public void prewarm(FloatingMenuPrewarmListener listener) {
+        if (!mPrewarmer.isRunning()) {
+            mPrewarmPosition = 0;
+        }
+        mPrewarmer.start(listener);
+    }
+
+    /**
+     * Prewarms the label of one button.
+     *
+     * @return true if there are buttons left
+     */
+    private boolean prewarmStep() {
+        if (mPrewarmPosition >= mButtonsCount) {
+            // Covers buttons added while prewarming
+            prefetchLabels();
+            return false;
+        }
+
+        View child = getChildAt(mPrewarmPosition++);
+        if (!(child instanceof FloatingActionButton)) return true;
+
+        FloatingActionButton fab = (FloatingActionButton) child;
+        if (mLabelsDeferred && fab.getLabelView() == null) {
+            addLabel(fab);
+            syncItemVisibility(fab);
+            updateLabelIndex();
+        }
+
+        Label label = fab.getLabelView();
+        if (label != null && mMeasuredVersion >= 0) {
+            // Builds the text layout, the next layout pass reuses it
+            measureLabel(child, label, mMeasuredWidthSpec, mMeasuredHeightSpec);
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the mapping from child index to label used by measure and layout. The buttons
+     * are the first children, so the index of a button is also its child index.
+     */
+    private void updateLabelIndex() {
+        if (mLabels.length < mButtonsCount) {
+            mLabels = new Label[mButtonsCount];
+        }
+        for (int i = 0; i < mLabels.length; i++) {
+            View child = i < mButtonsCount ? getChildAt(i) : null;
+            mLabels[i] = child instanceof FloatingActionButton ? ((FloatingActionButton) child).getLabelView() : null;
+        }
+    }
+
+    private Label getLabelAt(int index) {
+        return index < mLabels.length ? mLabels[index] : null;
+    }
+
+    /**
+     * Applies the closed state to a button that joins a closed menu. Visibility of the buttons
+     * and labels is only changed here and by the open/close timeline, layout just positions
+     * them.
+     */
+    private void syncItemVisibility(FloatingActionButton fab) {
+        if (mIsMenuOpening) return;
+
+        if (fab != mMenuButton) {
+            fab.hide(false);
+        }
+        Label label = fab.getLabelView();
+        // Labels hidden by the app stay as they are
+        if (label != null && label.isHandleVisibilityChanges()) {
+            label.setVisibility(INVISIBLE);
+        }
+    }
+
+    /**
+     * Returns the button at the given position in opening order, which starts from the bottom
+     * most child.
+     */
+    private FloatingActionButton getTimelineButton(int position) {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            if (child instanceof FloatingActionButton && child.getVisibility() != GONE) {
+                if (position-- == 0) {
+                    return (FloatingActionButton) child;
                 }
             }
+        }
+        return null;
+    }
 
-            mUiHandler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    mMenuOpened = false;
-                    if (mToggleListener != null) {
-                        mToggleListener.onMenuToggle(false);
-                    }
-                }
-            }, ++counter * mAnimationDelayPerItem);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mTimeline.end();
+        mPrewarmer.cancel();
+        mImageTogglePlayer.cancel();
+        mLayerTicker.stop();
+        releaseTransitionLayers();
+        if (mMenuPlayer != null) {
+            mMenuPlayer.cancel();
+        }
+        if (mItemScroller != null) {
+            mItemScroller.stop();
         }
     }
 
@@ -837,7 +1163,7 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     }
 
     public boolean isMenuHidden() {
-        return getVisibility() == INVISIBLE;
+        return getVisibility() == INVISIBLE || mMenuHiding;
     }
 
     public boolean isMenuButtonHidden() {
@@ -852,10 +1178,13 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     public void showMenu(boolean animate) {
         setCorrectPivot();
         if (isMenuHidden()) {
+            mMenuHiding = false;
+            AnimationPlayer player = getMenuPlayer();
+            player.cancel();
             if (animate) {
-                startAnimation(mMenuButtonShowAnimation);
+                player.play(mMenuButtonShowAnimation, null);
             }
-            setVisibility(VISIBLE);
+            setMenuVisibility(VISIBLE);
         }
     }
 
@@ -868,28 +1197,79 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         setCorrectPivot();
         if (!isMenuHidden() && !mIsMenuButtonAnimationRunning) {
             mIsMenuButtonAnimationRunning = true;
-            if (isOpened()) {
+            if (isOpeningOrClosing()) {
+                mPendingHide = PENDING_HIDE_MENU;
+                mPendingHideAnimate = animate;
                 close(animate);
-                mUiHandler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (animate) {
-                            startAnimation(mMenuButtonHideAnimation);
-                        }
-                        setVisibility(INVISIBLE);
-                        mIsMenuButtonAnimationRunning = false;
-                    }
-                }, mAnimationDelayPerItem * mButtonsCount);
             } else {
-                if (animate) {
-                    startAnimation(mMenuButtonHideAnimation);
-                }
-                setVisibility(INVISIBLE);
+                playMenuHideAnimation(animate);
                 mIsMenuButtonAnimationRunning = false;
             }
         }
     }
 
+    /**
+     * Hides the menu or the menu button once the closing timeline has finished. A menu that was
+     * opened again meanwhile stays shown.
+     */
+    private void runPendingHide(boolean opened) {
+        int pendingHide = mPendingHide;
+        mPendingHide = PENDING_HIDE_NONE;
+        if (pendingHide == PENDING_HIDE_NONE) return;
+
+        if (!opened) {
+            if (pendingHide == PENDING_HIDE_MENU) {
+                playMenuHideAnimation(mPendingHideAnimate);
+            } else {
+                hideMenuButtonWithImage(mPendingHideAnimate);
+            }
+        }
+        mIsMenuButtonAnimationRunning = false;
+    }
+
+    /**
+     * @return true if the menu is open, or its buttons are still being shown or hidden
+     */
+    private boolean isOpeningOrClosing() {
+        return mIsMenuOpening || mTimeline.isRunning();
+    }
+
+    /**
+     * The menu stays visible while the hide animation plays and becomes {@link #INVISIBLE}
+     * afterwards, unless the hide was cancelled by a visibility change meanwhile.
+     */
+    private void playMenuHideAnimation(boolean animate) {
+        AnimationPlayer player = getMenuPlayer();
+        player.cancel();
+        if (animate) {
+            mMenuHiding = true;
+            player.play(mMenuButtonHideAnimation, mHideMenuAction);
+        } else {
+            setVisibility(INVISIBLE);
+        }
+    }
+
+    @Override
+    public void setVisibility(int visibility) {
+        // An explicit visibility wins over a running hide animation
+        mMenuHiding = false;
+        if (mMenuPlayer != null) {
+            mMenuPlayer.cancel();
+        }
+        super.setVisibility(visibility);
+    }
+
+    private void setMenuVisibility(int visibility) {
+        super.setVisibility(visibility);
+    }
+
+    private AnimationPlayer getMenuPlayer() {
+        if (mMenuPlayer == null) {
+            mMenuPlayer = new AnimationPlayer(this);
+        }
+        return mMenuPlayer;
+    }
+
     public void toggleMenu(boolean animate) {
         if (isMenuHidden()) {
             showMenu(animate);
@@ -921,14 +1301,10 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         setCorrectPivot();
         if (!isMenuButtonHidden() && !mIsMenuButtonAnimationRunning) {
             mIsMenuButtonAnimationRunning = true;
-            if (isOpened()) {
+            if (isOpeningOrClosing()) {
+                mPendingHide = PENDING_HIDE_MENU_BUTTON;
+                mPendingHideAnimate = animate;
                 close(animate);
-                mUiHandler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        hideMenuButtonWithImage(animate);
-                    }
-                }, mAnimationDelayPerItem * mButtonsCount);
             } else {
                 hideMenuButtonWithImage(animate);
             }
@@ -950,6 +1326,7 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     public void setMenuButtonColorNormalResId(int colorResId) {
         mMenuColorNormal = getResources().getColor(colorResId);
         mMenuButton.setColorNormalResId(colorResId);
+        updateItemColors();
     }
 
     public int getMenuButtonColorNormal() {
@@ -959,11 +1336,13 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     public void setMenuButtonColorNormal(int color) {
         mMenuColorNormal = color;
         mMenuButton.setColorNormal(color);
+        updateItemColors();
     }
 
     public void setMenuButtonColorPressedResId(int colorResId) {
         mMenuColorPressed = getResources().getColor(colorResId);
         mMenuButton.setColorPressedResId(colorResId);
+        updateItemColors();
     }
 
     public int getMenuButtonColorPressed() {
@@ -973,11 +1352,13 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     public void setMenuButtonColorPressed(int color) {
         mMenuColorPressed = color;
         mMenuButton.setColorPressed(color);
+        updateItemColors();
     }
 
     public void setMenuButtonColorRippleResId(int colorResId) {
         mMenuColorRipple = getResources().getColor(colorResId);
         mMenuButton.setColorRippleResId(colorResId);
+        updateItemColors();
     }
 
     public int getMenuButtonColorRipple() {
@@ -987,21 +1368,52 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
     public void setMenuButtonColorRipple(int color) {
         mMenuColorRipple = color;
         mMenuButton.setColorRipple(color);
+        updateItemColors();
     }
 
+    /**
+     * @throws IllegalStateException if the menu shows items set by {@link #setMenuItems(List)}
+     */
     public void addMenuButton(FloatingActionButton fab) {
+        checkNoMenuItems();
         addView(fab, mButtonsCount - 2);
         mButtonsCount++;
-        addLabel(fab);
+        fab.setShadowEngine(mShadowEngine);
+        attachLabel(fab);
+        syncItemVisibility(fab);
+        updateLabelIndex();
+        invalidateMeasureCache();
     }
 
     public void removeMenuButton(FloatingActionButton fab) {
+        FloatingMenuItem item = fab.getMenuItem();
+        if (item != null && mItemButtons.get(item.getId()) == fab) {
+            mItemButtons.remove(item.getId());
+            int index = mMenuItems.indexOf(item);
+            if (index >= 0) {
+                mMenuItems.remove(index);
+                // The window keeps pointing at the same items
+                if (index < mFirstBoundItem) {
+                    mFirstBoundItem--;
+                }
+                if (index < mLastBoundItem) {
+                    mLastBoundItem--;
+                }
+            }
+            fab.setMenuItem(null);
+        }
         removeView(fab.getLabelView());
         removeView(fab);
         mButtonsCount--;
+        updateLabelIndex();
+        invalidateMeasureCache();
     }
 
+    /**
+     * @throws IllegalStateException if the menu shows items set by {@link #setMenuItems(List)}
+     */
     public void addMenuButton(FloatingActionButton fab, int index) {
+        checkNoMenuItems();
         int size = mButtonsCount - 2;
         if (index < 0) {
             index = 0;
@@ -1011,7 +1423,11 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
 
         addView(fab, index);
         mButtonsCount++;
-        addLabel(fab);
+        fab.setShadowEngine(mShadowEngine);
+        attachLabel(fab);
+        syncItemVisibility(fab);
+        updateLabelIndex();
+        invalidateMeasureCache();
     }
 
     @Override
@@ -1037,6 +1453,432 @@ public class FloatingActionMenu extends ViewGroup implements FloatingMenu {
         for (FloatingActionButton v : viewsToRemove) {
             removeMenuButton(v);
         }
+        // Items outside of the scrollable region have no button
+        mMenuItems.clear();
+        mFirstBoundItem = 0;
+        mLastBoundItem = 0;
+        updateItemScrollRange();
+        updateLabelIndex();
+    }
+
+    /**
+     * Shows the given items as menu buttons next to the menu button, the first item closest to it.
+     * <p>
+     * Items are matched to the current buttons by their id. Buttons of kept items are only bound
+     * again when the item changed, buttons of removed items are recycled together with their
+     * labels and reused for new items.
+     *
+     * <p>
+     * Items can't be mixed with buttons added as child views or by {@link #addMenuButton}, call
+     * {@link #removeAllMenuButtons()} first to switch a menu over to items.
+     *
+     * @param items items to show, null or empty to remove all of them
+     * @throws IllegalArgumentException if two items have the same id
+     * @throws IllegalStateException if the menu has buttons which were not created for items
+     */
+    public void setMenuItems(List<FloatingMenuItem> items) {
+        Set<Long> ids = new HashSet<>();
+        if (items != null && !items.isEmpty()) {
+            if (hasStaticMenuButtons()) {
+                throw new IllegalStateException(
+                        "Menu items can't be mixed with buttons added to the menu");
+            }
+            for (FloatingMenuItem item : items) {
+                if (!ids.add(item.getId())) {
+                    throw new IllegalArgumentException("Duplicate menu item id: " + item.getId());
+                }
+            }
+        }
+
+        mMenuItems.clear();
+        if (items != null) {
+            mMenuItems.addAll(items);
+        }
+        updateItemScrollRange();
+        updateItemWindow(true);
+    }
+
+    private boolean hasStaticMenuButtons() {
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child != mMenuButton && child != mImageToggle
+                    && ((FloatingActionButton) child).getMenuItem() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkNoMenuItems() {
+        if (!mMenuItems.isEmpty()) {
+            throw new IllegalStateException(
+                    "Buttons can't be added to a menu which shows items, set no items first");
+        }
+    }
+
+    public void setOnMenuItemClickListener(FloatingMenuItemClickListener listener) {
+        mMenuItemClickListener = listener;
+    }
+
+    /**
+     * Places items which do not fit above (or below) the menu button in a scrollable region.
+     * Only the items within that region are materialized as views, so opening and closing the
+     * menu only animates what is on screen. The region is scrolled by dragging while the menu
+     * is open.
+     */
+    public void setItemsScrollable(boolean scrollable) {
+        if (mItemsScrollable == scrollable) return;
+
+        mItemsScrollable = scrollable;
+        if (mItemScroller != null) {
+            mItemScroller.stop();
+        }
+        updateItemScrollRange();
+        updateItemWindow(false);
+        invalidateMeasureCache();
+        requestLayout();
+    }
+
+    public boolean isItemsScrollable() {
+        return mItemsScrollable;
+    }
+
+    /**
+     * Sets when the buttons and labels of the menu are moved onto hardware layers while it opens
+     * or closes. Either way frames only move their cached textures, {@link #LAYERS_WHOLE_TRANSITION}
+     * also keeps the layers between the staggered animations of the items.
+     *
+     * @param transitionLayers Accepted values: LAYERS_WHOLE_TRANSITION, LAYERS_PER_ANIMATION.
+     */
+    public void setTransitionLayers(int transitionLayers) {
+        mTransitionLayers = transitionLayers;
+    }
+
+    public int getTransitionLayers() {
+        return mTransitionLayers;
+    }
+
+    private void promoteTransitionLayers(boolean animate) {
+        if (!animate || mTransitionLayers != LAYERS_WHOLE_TRANSITION) return;
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE || child == mScrim) continue;
+
+            // Views on a layer of their own, e.g. software shadows, keep it
+            if (child.getLayerType() == LAYER_TYPE_NONE) {
+                child.setLayerType(LAYER_TYPE_HARDWARE, null);
+                mLayeredChildren.add(child);
+            } else if (handOverAnimationLayer(child)) {
+                // A show or hide animation would drop the layer halfway through the transition
+                mLayeredChildren.add(child);
+            }
+        }
+        if (!mLayeredChildren.isEmpty()) {
+            mLayerTicker.start();
+        }
+    }
+
+    private boolean handOverAnimationLayer(View child) {
+        if (child instanceof FloatingActionButton) {
+            return ((FloatingActionButton) child).handOverAnimationLayer();
+        } else if (child instanceof Label) {
+            return ((Label) child).handOverAnimationLayer();
+        }
+        return child == mImageToggle && mImageTogglePlayer.handOverLayer();
+    }
+
+    private boolean isAnyLayeredChildAnimating() {
+        if (mOpenAnimatorSet.isRunning() || mCloseAnimatorSet.isRunning()
+                || (mIconToggleSet != null && mIconToggleSet.isRunning())) {
+            return true;
+        }
+
+        for (int i = 0; i < mLayeredChildren.size(); i++) {
+            View child = mLayeredChildren.get(i);
+            if (child instanceof FloatingActionButton && ((FloatingActionButton) child).isAnimationRunning()
+                    || child instanceof Label && ((Label) child).isAnimationRunning()
+                    || child == mImageToggle && mImageTogglePlayer.isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void releaseTransitionLayers() {
+        for (int i = 0; i < mLayeredChildren.size(); i++) {
+            View child = mLayeredChildren.get(i);
+            if (child.getLayerType() == LAYER_TYPE_HARDWARE) {
+                child.setLayerType(LAYER_TYPE_NONE, null);
+            }
+        }
+        mLayeredChildren.clear();
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if (!isItemScrollActive() || mItemScroller.getRange() == 0 || child == mMenuButton
+                || child == mImageToggle || child == mMenuButton.getLabelView()) {
+            return super.drawChild(canvas, child, drawingTime);
+        }
+
+        int saveCount = canvas.save();
+        canvas.clipRect(0, mItemRegionTop, getWidth(), mItemRegionBottom);
+        boolean more = super.drawChild(canvas, child, drawingTime);
+        canvas.restoreToCount(saveCount);
+        return more;
+    }
+
+    private boolean isItemScrollActive() {
+        return mItemsScrollable && mItemScroller != null;
+    }
+
+    private void updateItemScrollRange() {
+        if (!mItemsScrollable || mItemExtent == 0 || mItemRegionHeight == 0) {
+            if (mItemScroller != null) {
+                mItemScroller.setRange(0);
+            }
+            return;
+        }
+
+        if (mItemScroller == null) {
+            mItemScroller = new MenuItemScroller(getContext(), new MenuItemScroller.Host() {
+                @Override
+                public void onItemScrollChanged(int offset) {
+                    // Binding other items requests a layout, which places them at the new offset
+                    if (!updateItemWindow(false)) {
+                        offsetScrolledItems(offset);
+                    }
+                }
+
+                @Override
+                public boolean isInItemRegion(float x, float y) {
+                    return isOnScrolledItem(x, y);
+                }
+            }, mOpenDirection == OPEN_UP);
+        }
+        mItemScroller.setRange(mMenuItems.size() * mItemExtent - mItemRegionHeight);
+    }
+
+    /**
+     * @return true if the point is within the item region and on the column of an item or label
+     */
+    private boolean isOnScrolledItem(float x, float y) {
+        if (y < mItemRegionTop || y >= mItemRegionBottom) return false;
+
+        View menuLabel = mMenuButton.getLabelView();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child == mMenuButton || child == mImageToggle || child == menuLabel
+                    || child == mScrim || child.getVisibility() != VISIBLE) {
+                continue;
+            }
+            if (x >= child.getLeft() && x < child.getRight()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the items laid out at the previous scroll offset to the given one, without a layout
+     * pass. Only used while the same items stay bound.
+     */
+    private void offsetScrolledItems(int offset) {
+        int delta = (mOpenDirection == OPEN_UP ? 1 : -1) * (offset - mLaidOutItemScroll);
+        mLaidOutItemScroll = offset;
+        if (delta == 0) return;
+
+        View menuLabel = mMenuButton.getLabelView();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child != mMenuButton && child != mImageToggle && child != menuLabel && child != mScrim) {
+                child.offsetTopAndBottom(delta);
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Binds the items which are within the scrollable region, or all of them if the menu is not
+     * scrollable.
+     *
+     * @param force true to bind them again even if the same items are in the region
+     * @return true if items were bound
+     */
+    private boolean updateItemWindow(boolean force) {
+        int first = 0;
+        int last = mMenuItems.size();
+        if (mItemsScrollable) {
+            if (mItemExtent == 0 || mItemRegionHeight == 0) {
+                // Not measured yet, one item is enough to find out the item size
+                last = Math.min(last, 1);
+            } else {
+                int offset = mItemScroller != null ? mItemScroller.getOffset() : 0;
+                first = Math.min(offset / mItemExtent, last);
+                last = Math.min(last, (offset + mItemRegionHeight + mItemExtent - 1) / mItemExtent);
+            }
+        }
+
+        if (!force && first == mFirstBoundItem && last == mLastBoundItem) return false;
+
+        mFirstBoundItem = first;
+        mLastBoundItem = last;
+        bindMenuItems(mMenuItems.subList(first, last));
+        return true;
+    }
+
+    private void scheduleItemWindowUpdate() {
+        if (mItemWindowUpdatePending) return;
+
+        mItemWindowUpdatePending = true;
+        Util.postOnAnimation(this, mUpdateItemWindowRunnable);
+    }
+
+    private void bindMenuItems(List<FloatingMenuItem> items) {
+        Set<Long> ids = new HashSet<>();
+        for (FloatingMenuItem item : items) {
+            ids.add(item.getId());
+        }
+
+        Iterator<Map.Entry<Long, FloatingActionButton>> iterator = mItemButtons.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, FloatingActionButton> entry = iterator.next();
+            if (!ids.contains(entry.getKey())) {
+                recycleItemButton(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        View anchor = mMenuButton;
+        for (FloatingMenuItem item : items) {
+            FloatingActionButton fab = mItemButtons.get(item.getId());
+            if (fab == null) {
+                fab = obtainItemButton();
+                mItemButtons.put(item.getId(), fab);
+                bindItemButton(fab, item);
+            } else if (!item.equals(fab.getMenuItem())) {
+                bindItemButton(fab, item);
+            }
+            placeItemButton(fab, anchor);
+            anchor = fab;
+        }
+
+        updateLabelIndex();
+        invalidateMeasureCache();
+        requestLayout();
+    }
+
+    private FloatingActionButton obtainItemButton() {
+        if (!mRecycledButtons.isEmpty()) {
+            return mRecycledButtons.remove(mRecycledButtons.size() - 1);
+        }
+
+        FloatingActionButton fab = new FloatingActionButton(getContext());
+        fab.setShadowEngine(mShadowEngine);
+        fab.setOnClickListener(mItemClickListener);
+        return fab;
+    }
+
+    private void recycleItemButton(FloatingActionButton fab) {
+        Label label = fab.getLabelView();
+        if (label != null) {
+            removeView(label);
+        }
+        removeView(fab);
+        mButtonsCount--;
+        fab.setMenuItem(null);
+        mRecycledButtons.add(fab);
+    }
+
+    private void bindItemButton(FloatingActionButton fab, FloatingMenuItem item) {
+        FloatingMenuItem previous = fab.getMenuItem();
+
+        fab.beginUpdate();
+        if (previous == null || previous.getIconResId() != item.getIconResId()) {
+            if (item.getIconResId() != 0) {
+                fab.setImageResource(item.getIconResId());
+            } else {
+                fab.setImageDrawable(null);
+            }
+        }
+        applyItemColors(fab, item);
+        fab.endUpdate();
+
+        fab.setLabelText(item.getLabel());
+        fab.setMenuItem(item);
+    }
+
+    private void applyItemColors(FloatingActionButton fab, FloatingMenuItem item) {
+        boolean own = item.hasColors();
+        fab.setColorNormal(own ? item.getColorNormal() : mMenuColorNormal);
+        fab.setColorPressed(own ? item.getColorPressed() : mMenuColorPressed);
+        fab.setColorRipple(own ? item.getColorRipple() : mMenuColorRipple);
+    }
+
+    /**
+     * Passes changed menu colors on to the bound items which use them.
+     */
+    private void updateItemColors() {
+        for (FloatingActionButton fab : mItemButtons.values()) {
+            FloatingMenuItem item = fab.getMenuItem();
+            if (item != null && !item.hasColors()) {
+                fab.beginUpdate();
+                applyItemColors(fab, item);
+                fab.endUpdate();
+            }
+        }
+    }
+
+    /**
+     * Puts the button right before the anchor, adding it and its label to the menu if needed.
+     */
+    private void placeItemButton(FloatingActionButton fab, View anchor) {
+        int index = indexOfChild(fab);
+        if (index < 0) {
+            addView(fab, indexOfChild(anchor));
+            mButtonsCount++;
+            if (fab.getLabelView() != null) {
+                addView(fab.getLabelView());
+            }
+            syncItemLabel(fab);
+            if (mIsMenuOpening) {
+                fab.show(false);
+                if (fab.getLabelView() != null) {
+                    fab.getLabelView().setVisibility(VISIBLE);
+                }
+            } else {
+                syncItemVisibility(fab);
+            }
+        } else {
+            int anchorIndex = indexOfChild(anchor);
+            if (index != anchorIndex - 1) {
+                // Moved without detaching from the window
+                detachViewFromParent(index);
+                attachViewToParent(fab, index < anchorIndex ? anchorIndex - 1 : anchorIndex,
+                        fab.getLayoutParams());
+                invalidate();
+            }
+            syncItemLabel(fab);
+        }
+    }
+
+    /**
+     * Adds or removes the label when the label text of an item button became non-empty or empty.
+     */
+    private void syncItemLabel(FloatingActionButton fab) {
+        Label label = fab.getLabelView();
+        boolean hasText = !TextUtils.isEmpty(fab.getLabelText());
+        if (label != null && !hasText) {
+            removeView(label);
+            fab.setLabelView(null);
+        } else if (label == null && hasText) {
+            attachLabel(fab);
+            label = fab.getLabelView();
+            if (label != null && !mIsMenuOpening) {
+                label.setVisibility(INVISIBLE);
+            }
+        }
     }
 
     public String getMenuButtonLabelText() {
@@ -0,0 +1,104 @@
+package com.github.clans.fab;
+
+import android.text.TextUtils;
+
+/**
+ * Immutable description of an item shown by {@link FloatingActionMenu#setMenuItems(java.util.List)}.
+ * <p>
+ * The id identifies the item across calls, so it has to be stable and unique within a menu.
+ * Items with the same id and equal contents are not bound again.
+ */
+public final class FloatingMenuItem {
+
+    private final long mId;
+    private final int mIconResId;
+    private final String mLabel;
+    private final int mColorNormal;
+    private final int mColorPressed;
+    private final int mColorRipple;
+    private final boolean mHasColors;
+
+    /**
+     * Creates an item using the colors of the menu, see {@code menu_colorNormal},
+     * {@code menu_colorPressed} and {@code menu_colorRipple}.
+     *
+     * @param iconResId the icon of the item, 0 for none
+     */
+    public FloatingMenuItem(long id, int iconResId, String label) {
+        this(id, iconResId, label, 0, 0, 0, false);
+    }
+
+    public FloatingMenuItem(long id, int iconResId, String label, int colorNormal, int colorPressed,
+                            int colorRipple) {
+        this(id, iconResId, label, colorNormal, colorPressed, colorRipple, true);
+    }
+
+    private FloatingMenuItem(long id, int iconResId, String label, int colorNormal, int colorPressed,
+                             int colorRipple, boolean hasColors) {
+        mId = id;
+        mIconResId = iconResId;
+        mLabel = label;
+        mColorNormal = colorNormal;
+        mColorPressed = colorPressed;
+        mColorRipple = colorRipple;
+        mHasColors = hasColors;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public int getIconResId() {
+        return mIconResId;
+    }
+
+    public String getLabel() {
+        return mLabel;
+    }
+
+    public int getColorNormal() {
+        return mColorNormal;
+    }
+
+    public int getColorPressed() {
+        return mColorPressed;
+    }
+
+    public int getColorRipple() {
+        return mColorRipple;
+    }
+
+    /**
+     * @return false if the item takes the colors of the menu it is shown in
+     */
+    public boolean hasColors() {
+        return mHasColors;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FloatingMenuItem)) return false;
+
+        FloatingMenuItem item = (FloatingMenuItem) o;
+        return item.mId == mId
+                && item.mIconResId == mIconResId
+                && TextUtils.equals(item.mLabel, mLabel)
+                && item.mColorNormal == mColorNormal
+                && item.mColorPressed == mColorPressed
+                && item.mColorRipple == mColorRipple
+                && item.mHasColors == mHasColors;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mId ^ (mId >>> 32));
+        result = 31 * result + mIconResId;
+        result = 31 * result + (mLabel != null ? mLabel.hashCode() : 0);
+        result = 31 * result + mColorNormal;
+        result = 31 * result + mColorPressed;
+        result = 31 * result + mColorRipple;
+        result = 31 * result + (mHasColors ? 1 : 0);
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.clans.fab;
+
+/**
+ * Listener for clicks on the items set by {@link FloatingActionMenu#setMenuItems(java.util.List)}.
+ */
+
+public interface FloatingMenuItemClickListener {
+    void onMenuItemClick(FloatingMenuItem item);
+}
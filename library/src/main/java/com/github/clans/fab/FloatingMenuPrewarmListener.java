@@ -0,0 +1,13 @@
+package com.github.clans.fab;
+
+/**
+ * Listener for the completion of {@link FloatingActionMenu#prewarm(FloatingMenuPrewarmListener)}.
+ */
+
+public interface FloatingMenuPrewarmListener {
+
+    /**
+     * @param sliceCount number of idle slices the work was split into
+     */
+    void onMenuPrewarmed(int sliceCount);
+}
@@ -0,0 +1,115 @@
+package com.github.clans.fab;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Calls back once per display frame while started.
+ * <p>
+ * <b>API 16+</b>: ticks are driven by the {@link Choreographer}, so they are aligned with vsync.
+ * On older platforms a main thread handler posts at the default frame interval instead.
+ * <p>
+ * The first tick after {@link #start()} reports no elapsed time, so a ticker that was stopped
+ * and started again continues from where it left off instead of jumping forward.
+ */
+final class FrameTicker {
+
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private final Callback mCallback;
+    private final Runnable mFallbackRunnable;
+    private Handler mHandler;
+    private Object mFrameCallback;
+    private boolean mRunning;
+    private long mLastFrameTimeMillis = -1;
+
+    FrameTicker(Callback callback) {
+        mCallback = callback;
+        mFallbackRunnable = new Runnable() {
+            @Override
+            public void run() {
+                onFrame(SystemClock.uptimeMillis());
+            }
+        };
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    void start() {
+        if (mRunning) return;
+
+        mRunning = true;
+        mLastFrameTimeMillis = -1;
+        scheduleFrame();
+    }
+
+    void stop() {
+        if (!mRunning) return;
+
+        mRunning = false;
+        if (Util.hasJellyBean()) {
+            removeFrameCallback();
+        } else if (mHandler != null) {
+            mHandler.removeCallbacks(mFallbackRunnable);
+        }
+    }
+
+    private void onFrame(long frameTimeMillis) {
+        if (!mRunning) return;
+
+        long deltaMillis = mLastFrameTimeMillis < 0 ? 0 : frameTimeMillis - mLastFrameTimeMillis;
+        mLastFrameTimeMillis = frameTimeMillis;
+
+        if (mCallback.onTick(deltaMillis)) {
+            scheduleFrame();
+        } else {
+            mRunning = false;
+        }
+    }
+
+    private void scheduleFrame() {
+        if (Util.hasJellyBean()) {
+            postFrameCallback();
+        } else {
+            if (mHandler == null) {
+                mHandler = new Handler(Looper.getMainLooper());
+            }
+            mHandler.postDelayed(mFallbackRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos / 1000000);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+        }
+    }
+
+    interface Callback {
+
+        /**
+         * @param deltaMillis time elapsed since the previous tick
+         * @return true to receive another tick on the next frame
+         */
+        boolean onTick(long deltaMillis);
+    }
+}
@@ -3,15 +3,13 @@ package com.github.clans.fab;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Outline;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Xfermode;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
@@ -30,8 +28,6 @@ import android.widget.TextView;
 
 public class Label extends TextView {
 
-    private static final Xfermode PORTER_DUFF_CLEAR = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
-
     private int mShadowRadius;
     private int mShadowXOffset;
     private int mShadowYOffset;
@@ -47,7 +43,9 @@ public class Label extends TextView {
     private FloatingActionButton mFab;
     private Animation mShowAnimation;
     private Animation mHideAnimation;
+    private AnimationPlayer mAnimationPlayer;
     private boolean mUsingStyle;
+    private BackgroundUpdater mBackgroundUpdater;
     GestureDetector mGestureDetector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
 
         @Override
@@ -69,6 +67,16 @@ public class Label extends TextView {
         }
     });
     private boolean mHandleVisibilityChanges = true;
+    private boolean mHiding;
+    private final Runnable mHideEndAction = new Runnable() {
+        @Override
+        public void run() {
+            if (mHiding) {
+                mHiding = false;
+                setLabelVisibility(INVISIBLE);
+            }
+        }
+    };
 
     public Label(Context context) {
         super(context);
@@ -88,6 +96,20 @@ public class Label extends TextView {
         setMeasuredDimension(calculateMeasuredWidth(), calculateMeasuredHeight());
     }
 
+    @Override
+    protected void onTextChanged(CharSequence text, int start, int lengthBefore, int lengthAfter) {
+        super.onTextChanged(text, start, lengthBefore, lengthAfter);
+        // Labels of recycled menu items get new text, the raw size is taken again on next measure
+        mRawWidth = 0;
+        mRawHeight = 0;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        cancelAnimation();
+    }
+
     private int calculateMeasuredWidth() {
         if (mRawWidth == 0) {
             mRawWidth = getMeasuredWidth();
@@ -111,6 +133,10 @@ public class Label extends TextView {
     }
 
     void updateBackground() {
+        if (mBackgroundUpdater != null) {
+            mBackgroundUpdater.clear();
+        }
+
         LayerDrawable layerDrawable;
         if (mShowShadow) {
             layerDrawable = new LayerDrawable(new Drawable[]{
@@ -136,7 +162,47 @@ public class Label extends TextView {
             });
         }
 
+        // Replacing the background resets the padding set up by the menu
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        int right = getPaddingRight();
+        int bottom = getPaddingBottom();
+
         setBackgroundCompat(layerDrawable);
+        setPadding(left, top, right, bottom);
+    }
+
+    /**
+     * Starts a batch of appearance changes. Until the matching {@link #endUpdate()} call the
+     * background of the <b>Label</b> is rebuilt at most once, when the outermost batch ends.
+     * Calls can be nested.
+     */
+    public void beginUpdate() {
+        getBackgroundUpdater().beginUpdate();
+    }
+
+    /**
+     * Ends a batch started by {@link #beginUpdate()} and applies the pending changes.
+     */
+    public void endUpdate() {
+        getBackgroundUpdater().endUpdate();
+    }
+
+    void scheduleBackgroundUpdate() {
+        getBackgroundUpdater().schedule();
+    }
+
+    private BackgroundUpdater getBackgroundUpdater() {
+        // Created lazily since the super constructor already calls the setters
+        if (mBackgroundUpdater == null) {
+            mBackgroundUpdater = new BackgroundUpdater(this, new Runnable() {
+                @Override
+                public void run() {
+                    updateBackground();
+                }
+            });
+        }
+        return mBackgroundUpdater;
     }
 
     public void removeLabelBackground() {
@@ -204,20 +270,42 @@ public class Label extends TextView {
         }
     }
 
-    private void playShowAnimation() {
-        if (mShowAnimation != null) {
-            mHideAnimation.cancel();
-            startAnimation(mShowAnimation);
+    private AnimationPlayer getAnimationPlayer() {
+        if (mAnimationPlayer == null) {
+            mAnimationPlayer = new AnimationPlayer(this);
         }
+        return mAnimationPlayer;
     }
 
-    private void playHideAnimation() {
-        if (mHideAnimation != null) {
-            mShowAnimation.cancel();
-            startAnimation(mHideAnimation);
+    boolean isAnimationRunning() {
+        return mAnimationPlayer != null && mAnimationPlayer.isRunning();
+    }
+
+    /**
+     * @see AnimationPlayer#handOverLayer()
+     */
+    boolean handOverAnimationLayer() {
+        return mAnimationPlayer != null && mAnimationPlayer.handOverLayer();
+    }
+
+    private void cancelAnimation() {
+        if (mAnimationPlayer != null) {
+            mAnimationPlayer.cancel();
         }
     }
 
+    @Override
+    public void setVisibility(int visibility) {
+        // An explicit visibility wins over a running hide animation
+        mHiding = false;
+        cancelAnimation();
+        super.setVisibility(visibility);
+    }
+
+    private void setLabelVisibility(int visibility) {
+        super.setVisibility(visibility);
+    }
+
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     void onActionDown() {
         if (mUsingStyle) {
@@ -254,6 +342,10 @@ public class Label extends TextView {
 //        setPressed(false);
     }
 
+    FloatingActionButton getFab() {
+        return mFab;
+    }
+
     void setFab(FloatingActionButton fab) {
         mFab = fab;
         setShadow(fab);
@@ -274,17 +366,25 @@ public class Label extends TextView {
     }
 
     void show(boolean animate) {
-        if (animate) {
-            playShowAnimation();
+        mHiding = false;
+        cancelAnimation();
+        if (animate && mShowAnimation != null) {
+            getAnimationPlayer().play(mShowAnimation, null);
         }
-        setVisibility(VISIBLE);
+        setLabelVisibility(VISIBLE);
     }
 
     void hide(boolean animate) {
-        if (animate) {
-            playHideAnimation();
+        if (animate && mHideAnimation != null) {
+            AnimationPlayer player = getAnimationPlayer();
+            // Cancelling a previous hide resets the flag
+            player.cancel();
+            // Stays visible until the animation is over
+            mHiding = true;
+            player.play(mHideAnimation, mHideEndAction);
+        } else {
+            setVisibility(INVISIBLE);
         }
-        setVisibility(INVISIBLE);
     }
 
     void setShowAnimation(Animation showAnimation) {
@@ -331,38 +431,39 @@ public class Label extends TextView {
         return super.onTouchEvent(event);
     }
 
-    private class Shadow extends Drawable {
+    private class Shadow extends Drawable implements ShadowCache.Listener {
 
-        private Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private Paint mErase = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Rect mSrc = new Rect();
+        private final RectF mDst = new RectF();
+        private ShadowCache.RoundRectKey mKey;
+        private Bitmap mBitmap;
 
         private Shadow() {
             this.init();
         }
 
         private void init() {
-            setLayerType(LAYER_TYPE_SOFTWARE, null);
-            mPaint.setStyle(Paint.Style.FILL);
-            mPaint.setColor(mColorNormal);
-
-            mErase.setXfermode(PORTER_DUFF_CLEAR);
+            mKey = new ShadowCache.RoundRectKey(mCornerRadius, mShadowRadius, mShadowXOffset,
+                    mShadowYOffset, mShadowColor, getResources().getDisplayMetrics().density);
+            mBitmap = isInEditMode() ? ShadowCache.getNow(mKey) : ShadowCache.get(mKey, this);
+        }
 
-            if (!isInEditMode()) {
-                mPaint.setShadowLayer(mShadowRadius, mShadowXOffset, mShadowYOffset, mShadowColor);
-            }
+        @Override
+        public void onShadowReady(Bitmap bitmap) {
+            mBitmap = bitmap;
+            invalidateSelf();
         }
 
         @Override
         public void draw(Canvas canvas) {
-            RectF shadowRect = new RectF(
+            if (mBitmap == null) return;
+
+            ShadowCache.drawRoundRectShadow(canvas, mBitmap, mKey,
                     mShadowRadius + Math.abs(mShadowXOffset),
                     mShadowRadius + Math.abs(mShadowYOffset),
                     mRawWidth,
-                    mRawHeight
-            );
-
-            canvas.drawRoundRect(shadowRect, mCornerRadius, mCornerRadius, mPaint);
-            canvas.drawRoundRect(shadowRect, mCornerRadius, mCornerRadius, mErase);
+                    mRawHeight,
+                    mSrc, mDst);
         }
 
         @Override
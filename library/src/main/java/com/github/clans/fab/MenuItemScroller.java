@@ -0,0 +1,184 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
+import android.widget.OverScroller;
+
+/**
+ * Vertical drag and fling handling of the scrollable item region of a menu.
+ * <p>
+ * The scroller only tracks an offset between zero and the scroll range and reports changes to its
+ * host, which decides what to lay out and which items to materialize. An offset of zero shows the
+ * items closest to the menu button. Flings are driven by a {@link FrameTicker}.
+ */
+final class MenuItemScroller implements FrameTicker.Callback {
+
+    private final Host mHost;
+    private final OverScroller mScroller;
+    private final FrameTicker mTicker;
+    private final int mTouchSlop;
+    private final int mMinimumVelocity;
+    private final int mMaximumVelocity;
+    private final int mDirection;
+    private VelocityTracker mVelocityTracker;
+    private float mDownY;
+    private float mLastY;
+    private boolean mDragging;
+    private int mOffset;
+    private int mRange;
+
+    /**
+     * @param revealDownwards true if items further from the menu button are revealed by dragging
+     *                        down, as for menus opening up
+     */
+    MenuItemScroller(Context context, Host host, boolean revealDownwards) {
+        mHost = host;
+        mScroller = new OverScroller(context);
+        mTicker = new FrameTicker(this);
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinimumVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
+        mDirection = revealDownwards ? 1 : -1;
+    }
+
+    int getOffset() {
+        return mOffset;
+    }
+
+    int getRange() {
+        return mRange;
+    }
+
+    void setRange(int range) {
+        mRange = Math.max(0, range);
+        if (mOffset > mRange) {
+            setOffset(mRange);
+        }
+    }
+
+    void setOffset(int offset) {
+        offset = Math.max(0, Math.min(offset, mRange));
+        if (offset != mOffset) {
+            mOffset = offset;
+            mHost.onItemScrollChanged(offset);
+        }
+    }
+
+    void stop() {
+        mTicker.stop();
+        mScroller.forceFinished(true);
+        endDrag();
+    }
+
+    /**
+     * @return true once a vertical drag started and the remaining events should go to
+     * {@link #onTouchEvent(MotionEvent)}
+     */
+    boolean onInterceptTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownY = event.getY();
+                mLastY = mDownY;
+                // Catching a fling stops it
+                mDragging = mTicker.isRunning();
+                stopFling();
+                trackVelocity(event);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                trackVelocity(event);
+                if (!mDragging && mRange > 0 && Math.abs(event.getY() - mDownY) > mTouchSlop) {
+                    mDragging = true;
+                    mLastY = event.getY();
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                endDrag();
+                break;
+        }
+        return mDragging;
+    }
+
+    /**
+     * @return true if the event was consumed by a drag
+     */
+    boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // Touches outside of the items are left to the menu
+                return onInterceptTouchEvent(event)
+                        || mRange > 0 && mHost.isInItemRegion(event.getX(), event.getY());
+            case MotionEvent.ACTION_MOVE:
+                if (!onInterceptTouchEvent(event)) return false;
+
+                float y = event.getY();
+                setOffset(mOffset + Math.round((y - mLastY) * mDirection));
+                mLastY = y;
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (!mDragging) {
+                    endDrag();
+                    return false;
+                }
+
+                trackVelocity(event);
+                mVelocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
+                int velocity = Math.round(mVelocityTracker.getYVelocity() * mDirection);
+                endDrag();
+                if (Math.abs(velocity) > mMinimumVelocity) {
+                    mScroller.fling(0, mOffset, 0, velocity, 0, 0, 0, mRange);
+                    mTicker.start();
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                boolean dragging = mDragging;
+                endDrag();
+                return dragging;
+        }
+        return mDragging;
+    }
+
+    @Override
+    public boolean onTick(long deltaMillis) {
+        if (!mScroller.computeScrollOffset()) return false;
+
+        setOffset(mScroller.getCurrY());
+        return !mScroller.isFinished();
+    }
+
+    private void stopFling() {
+        mTicker.stop();
+        mScroller.forceFinished(true);
+    }
+
+    private void trackVelocity(MotionEvent event) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        mVelocityTracker.addMovement(event);
+    }
+
+    private void endDrag() {
+        mDragging = false;
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    interface Host {
+
+        /**
+         * @param offset new distance the items are scrolled away from the menu button, in pixels
+         */
+        void onItemScrollChanged(int offset);
+
+        /**
+         * @return true if the point, in host coordinates, lies on the scrollable items
+         */
+        boolean isInItemRegion(float x, float y);
+    }
+}
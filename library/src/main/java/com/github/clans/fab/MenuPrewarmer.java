@@ -0,0 +1,99 @@
+package com.github.clans.fab;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+/**
+ * Runs the first-open work of a menu in small slices while the UI thread is idle.
+ * <p>
+ * Each slice runs host steps until the slice budget is used up and then waits for the next frame
+ * before asking for the next idle period, so at most one slice runs per frame and frames are never
+ * delayed by more than the budget.
+ */
+final class MenuPrewarmer implements MessageQueue.IdleHandler, FrameTicker.Callback {
+
+    private static final long SLICE_BUDGET_MILLIS = 4;
+
+    private final Host mHost;
+    private final FrameTicker mTicker;
+    private FloatingMenuPrewarmListener mListener;
+    private boolean mRunning;
+    private int mSliceCount;
+
+    MenuPrewarmer(Host host) {
+        mHost = host;
+        mTicker = new FrameTicker(this);
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts prewarming from the UI thread. If it is already running only the listener is replaced.
+     */
+    void start(FloatingMenuPrewarmListener listener) {
+        mListener = listener;
+        if (mRunning) return;
+
+        mRunning = true;
+        mSliceCount = 0;
+        Looper.myQueue().addIdleHandler(this);
+    }
+
+    /**
+     * Stops prewarming without notifying the listener.
+     */
+    void cancel() {
+        if (!mRunning) return;
+
+        mRunning = false;
+        mListener = null;
+        mTicker.stop();
+        Looper.myQueue().removeIdleHandler(this);
+    }
+
+    @Override
+    public boolean queueIdle() {
+        if (!mRunning) return false;
+
+        mSliceCount++;
+        long deadline = SystemClock.uptimeMillis() + SLICE_BUDGET_MILLIS;
+        boolean hasMore;
+        do {
+            hasMore = mHost.onPrewarmStep();
+        } while (hasMore && SystemClock.uptimeMillis() < deadline);
+
+        if (hasMore) {
+            mTicker.start();
+            return false;
+        }
+
+        mRunning = false;
+        FloatingMenuPrewarmListener listener = mListener;
+        mListener = null;
+        if (listener != null) {
+            listener.onMenuPrewarmed(mSliceCount);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onTick(long deltaMillis) {
+        if (mRunning) {
+            Looper.myQueue().addIdleHandler(this);
+        }
+        return false;
+    }
+
+    interface Host {
+
+        /**
+         * Performs one small unit of work.
+         *
+         * @return true if there is more work left
+         */
+        boolean onPrewarmStep();
+    }
+}
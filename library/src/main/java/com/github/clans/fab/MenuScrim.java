@@ -0,0 +1,85 @@
+package com.github.clans.fab;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Background dim of the menus.
+ * <p>
+ * The scrim is a child view of its own, kept behind the buttons by the menu. Showing and hiding
+ * animate the view alpha, which only updates the scrim's display list property instead of
+ * invalidating the whole menu. Toggling while the dim is animating continues from the current
+ * alpha. The scrim is {@link #INVISIBLE} while fully hidden, so it costs nothing to draw.
+ */
+final class MenuScrim extends View {
+
+    private final long mDuration;
+    private boolean mShown;
+    private final AnimatorListenerAdapter mHideListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (!mShown) {
+                setVisibility(INVISIBLE);
+            }
+        }
+    };
+
+    MenuScrim(Context context, int color, long duration) {
+        super(context);
+        mDuration = duration;
+        setBackgroundColor(color);
+        setAlpha(0f);
+        setVisibility(INVISIBLE);
+    }
+
+    void show(boolean animate) {
+        if (mShown) return;
+
+        animate().cancel();
+        mShown = true;
+        setVisibility(VISIBLE);
+        animateAlpha(1f, animate);
+    }
+
+    void hide(boolean animate) {
+        if (!mShown) return;
+
+        // Cancelling first keeps the end listener from hiding the scrim before it faded out
+        animate().cancel();
+        mShown = false;
+        animateAlpha(0f, animate);
+        if (!animate) {
+            setVisibility(INVISIBLE);
+        }
+    }
+
+    private void animateAlpha(float alpha, boolean animate) {
+        if (animate) {
+            // A reversal only takes as long as the part of the way it has to go back
+            long duration = (long) (mDuration * Math.abs(alpha - getAlpha()));
+            animate().alpha(alpha).setDuration(duration).setListener(mHideListener);
+        } else {
+            setAlpha(alpha);
+        }
+    }
+
+    /**
+     * Makes the scrim cover its parent. Called from the menu's layout pass.
+     */
+    void layoutInParent(ViewGroup parent) {
+        int width = parent.getWidth();
+        int height = parent.getHeight();
+        measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        layout(0, 0, width, height);
+    }
+
+    @Override
+    public boolean hasOverlappingRendering() {
+        // Only a background is drawn, the alpha can be applied without an offscreen layer
+        return false;
+    }
+}
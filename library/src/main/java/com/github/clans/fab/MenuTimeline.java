@@ -0,0 +1,116 @@
+package com.github.clans.fab;
+
+/**
+ * Staggers the show/hide steps of the menu buttons from a single frame callback.
+ * <p>
+ * The timeline tracks how many buttons are currently shown. Opening shows them one by one in
+ * opening order and closing hides them in the reverse order, one step per item delay. Starting
+ * the opposite direction while running reverses the timeline from where it is, so rapid toggling
+ * never leaves buttons in a mixed state. Nothing is allocated per toggle.
+ */
+final class MenuTimeline implements FrameTicker.Callback {
+
+    private final Host mHost;
+    private final FrameTicker mTicker;
+    private boolean mOpening;
+    private boolean mAnimate;
+    private int mPosition;
+    private int mStepDelay;
+    private long mElapsed;
+
+    MenuTimeline(Host host) {
+        mHost = host;
+        mTicker = new FrameTicker(this);
+    }
+
+    boolean isRunning() {
+        return mTicker.isRunning();
+    }
+
+    /**
+     * Starts opening or closing. Does nothing if the timeline already runs in that direction.
+     *
+     * @param opening   true to show the buttons, false to hide them
+     * @param animate   passed on to every step
+     * @param stepDelay delay between two steps, in milliseconds
+     */
+    void start(boolean opening, boolean animate, int stepDelay) {
+        mAnimate = animate;
+        mStepDelay = stepDelay;
+
+        if (mTicker.isRunning()) {
+            if (mOpening != opening) {
+                // Undo the latest step right away and keep going from there
+                mOpening = opening;
+                mElapsed = 0;
+            }
+            return;
+        }
+
+        mOpening = opening;
+        mPosition = opening ? 0 : mHost.getTimelineStepCount();
+        mElapsed = 0;
+        mTicker.start();
+    }
+
+    /**
+     * Runs the remaining steps at once, without animation, and finishes the timeline.
+     */
+    void end() {
+        if (!mTicker.isRunning()) return;
+
+        mTicker.stop();
+        mAnimate = false;
+        int count = mHost.getTimelineStepCount();
+        while (step(count)) {
+            count = mHost.getTimelineStepCount();
+        }
+        mHost.onTimelineFinished(mOpening);
+    }
+
+    @Override
+    public boolean onTick(long deltaMillis) {
+        mElapsed += deltaMillis;
+        while (mElapsed >= 0) {
+            if (!step(mHost.getTimelineStepCount())) {
+                mHost.onTimelineFinished(mOpening);
+                return false;
+            }
+            mElapsed -= mStepDelay;
+        }
+        return true;
+    }
+
+    private boolean step(int count) {
+        if (mPosition > count) {
+            // Buttons were removed while running
+            mPosition = count;
+        }
+
+        if (mOpening && mPosition < count) {
+            mHost.onTimelineStep(mPosition++, true, mAnimate);
+            return true;
+        } else if (!mOpening && mPosition > 0) {
+            mHost.onTimelineStep(--mPosition, false, mAnimate);
+            return true;
+        }
+        return false;
+    }
+
+    interface Host {
+
+        /**
+         * @return the number of buttons taking part in the timeline
+         */
+        int getTimelineStepCount();
+
+        /**
+         * @param position position of the button in opening order
+         * @param show     true to show the button, false to hide it
+         * @param animate  whether the change should be animated
+         */
+        void onTimelineStep(int position, boolean show, boolean animate);
+
+        void onTimelineFinished(boolean opened);
+    }
+}
@@ -0,0 +1,450 @@
+package com.github.clans.fab;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Xfermode;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of pre-rendered shadow bitmaps.
+ * <p>
+ * Blurred shadows are rendered once on a background thread into a bitmap and then drawn as a plain
+ * bitmap, so the views using them can stay hardware accelerated. Bitmaps are kept in an LRU
+ * structure bounded by {@link #setMaxSize(int)}.
+ */
+public final class ShadowCache {
+
+    private static final int DEFAULT_MAX_SIZE = 2 * 1024 * 1024;
+    private static final Xfermode PORTER_DUFF_CLEAR = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
+
+    private static final Object sLock = new Object();
+    private static final LinkedHashMap<Key, Bitmap> sBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<Key, List<Listener>> sPending = new HashMap<>();
+    private static final Handler sUiHandler = new Handler(Looper.getMainLooper());
+
+    private static int sMaxSize = DEFAULT_MAX_SIZE;
+    private static int sSize;
+    private static int sHitCount;
+    private static int sMissCount;
+    private static int sEvictionCount;
+
+    private ShadowCache() {
+    }
+
+    /**
+     * Sets the maximum amount of memory in bytes the cached shadow bitmaps may occupy. Least
+     * recently used bitmaps are evicted when the limit is exceeded.
+     *
+     * @param maxSize maximum size in bytes
+     */
+    public static void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        synchronized (sLock) {
+            sMaxSize = maxSize;
+            trimToSize(maxSize);
+        }
+    }
+
+    public static int getMaxSize() {
+        synchronized (sLock) {
+            return sMaxSize;
+        }
+    }
+
+    /**
+     * Returns the amount of memory in bytes currently occupied by the cached shadow bitmaps.
+     */
+    public static int getSize() {
+        synchronized (sLock) {
+            return sSize;
+        }
+    }
+
+    public static int getHitCount() {
+        synchronized (sLock) {
+            return sHitCount;
+        }
+    }
+
+    public static int getMissCount() {
+        synchronized (sLock) {
+            return sMissCount;
+        }
+    }
+
+    public static int getEvictionCount() {
+        synchronized (sLock) {
+            return sEvictionCount;
+        }
+    }
+
+    /**
+     * Drops all cached shadow bitmaps. Bitmaps still referenced by views are not recycled.
+     */
+    public static void clear() {
+        synchronized (sLock) {
+            trimToSize(-1);
+        }
+    }
+
+    /**
+     * Returns the cached bitmap for the given key, or null if it is not rendered yet. In the latter
+     * case the bitmap is rendered in the background and the listener is notified on the UI thread
+     * once it is available.
+     */
+    static Bitmap get(final Key key, Listener listener) {
+        synchronized (sLock) {
+            Bitmap bitmap = sBitmaps.get(key);
+            if (bitmap != null) {
+                sHitCount++;
+                return bitmap;
+            }
+            sMissCount++;
+
+            List<Listener> listeners = sPending.get(key);
+            if (listeners != null) {
+                if (listener != null) {
+                    listeners.add(listener);
+                }
+                return null;
+            }
+
+            listeners = new ArrayList<>();
+            if (listener != null) {
+                listeners.add(listener);
+            }
+            sPending.put(key, listeners);
+        }
+
+        Util.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = key.render();
+                final List<Listener> listeners;
+                synchronized (sLock) {
+                    if (bitmap != null) {
+                        put(key, bitmap);
+                    }
+                    listeners = sPending.remove(key);
+                }
+
+                if (bitmap == null || listeners == null || listeners.isEmpty()) return;
+
+                sUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Listener listener : listeners) {
+                            listener.onShadowReady(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Returns the bitmap for the given key, rendering it on the calling thread if it is not cached.
+     */
+    static Bitmap getNow(Key key) {
+        synchronized (sLock) {
+            Bitmap bitmap = sBitmaps.get(key);
+            if (bitmap != null) {
+                sHitCount++;
+                return bitmap;
+            }
+            sMissCount++;
+        }
+
+        Bitmap bitmap = key.render();
+        if (bitmap != null) {
+            synchronized (sLock) {
+                put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private static void put(Key key, Bitmap bitmap) {
+        Bitmap previous = sBitmaps.put(key, bitmap);
+        sSize += bitmap.getRowBytes() * bitmap.getHeight();
+        if (previous != null) {
+            sSize -= previous.getRowBytes() * previous.getHeight();
+        }
+        trimToSize(sMaxSize);
+    }
+
+    private static void trimToSize(int maxSize) {
+        Iterator<Map.Entry<Key, Bitmap>> iterator = sBitmaps.entrySet().iterator();
+        while (sSize > maxSize && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next().getValue();
+            iterator.remove();
+            sSize -= bitmap.getRowBytes() * bitmap.getHeight();
+            sEvictionCount++;
+        }
+    }
+
+    /**
+     * Draws a {@link RoundRectKey} shadow stretched nine-patch style around the given rectangle.
+     * The corners are drawn unscaled and only the middle row and column of the bitmap are stretched.
+     * Keys with a fixed height are stretched horizontally only.
+     * {@code src} and {@code dst} are scratch objects supplied by the caller to avoid allocations.
+     */
+    static void drawRoundRectShadow(Canvas canvas, Bitmap bitmap, RoundRectKey key, float left,
+                                    float top, float right, float bottom, Rect src, RectF dst) {
+        int core = key.getCoreSize();
+        int padX = key.getPaddingX();
+        int padY = key.getPaddingY();
+        boolean stretchVertically = key.isStretchableVertically();
+
+        if (right - left < core * 2 + 1 || (stretchVertically && bottom - top < core * 2 + 1)) {
+            dst.set(left - padX, top - padY, right + padX, bottom + padY);
+            canvas.drawBitmap(bitmap, null, dst, null);
+            return;
+        }
+
+        int rows = stretchVertically ? 3 : 1;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < 3; column++) {
+                if (stretchVertically) {
+                    src.set(sliceEdge(column, padX, core, bitmap.getWidth()),
+                            sliceEdge(row, padY, core, bitmap.getHeight()),
+                            sliceEdge(column + 1, padX, core, bitmap.getWidth()),
+                            sliceEdge(row + 1, padY, core, bitmap.getHeight()));
+                    dst.set(targetEdge(column, left, right, padX, core),
+                            targetEdge(row, top, bottom, padY, core),
+                            targetEdge(column + 1, left, right, padX, core),
+                            targetEdge(row + 1, top, bottom, padY, core));
+                } else {
+                    src.set(sliceEdge(column, padX, core, bitmap.getWidth()), 0,
+                            sliceEdge(column + 1, padX, core, bitmap.getWidth()), bitmap.getHeight());
+                    dst.set(targetEdge(column, left, right, padX, core), top - padY,
+                            targetEdge(column + 1, left, right, padX, core), bottom + padY);
+                }
+                canvas.drawBitmap(bitmap, src, dst, null);
+            }
+        }
+    }
+
+    private static int sliceEdge(int index, int padding, int core, int size) {
+        switch (index) {
+            case 0:
+                return 0;
+            case 1:
+                return padding + core;
+            case 2:
+                return padding + core + 1;
+            default:
+                return size;
+        }
+    }
+
+    private static float targetEdge(int index, float start, float end, int padding, int core) {
+        switch (index) {
+            case 0:
+                return start - padding;
+            case 1:
+                return start + core;
+            case 2:
+                return end - core;
+            default:
+                return end + padding;
+        }
+    }
+
+    interface Listener {
+        void onShadowReady(Bitmap bitmap);
+    }
+
+    abstract static class Key {
+
+        abstract Bitmap render();
+    }
+
+    /**
+     * Shadow of a circle, with the circle itself erased. The circle is centered in the bitmap.
+     */
+    static final class CircleKey extends Key {
+
+        private final float mCircleRadius;
+        private final int mShadowRadius;
+        private final int mShadowXOffset;
+        private final int mShadowYOffset;
+        private final int mShadowColor;
+        private final float mDensity;
+
+        CircleKey(float circleRadius, int shadowRadius, int shadowXOffset, int shadowYOffset,
+                  int shadowColor, float density) {
+            mCircleRadius = circleRadius;
+            mShadowRadius = shadowRadius;
+            mShadowXOffset = shadowXOffset;
+            mShadowYOffset = shadowYOffset;
+            mShadowColor = shadowColor;
+            mDensity = density;
+        }
+
+        @Override
+        Bitmap render() {
+            int halfWidth = (int) Math.ceil(mCircleRadius) + mShadowRadius + Math.abs(mShadowXOffset);
+            int halfHeight = (int) Math.ceil(mCircleRadius) + mShadowRadius + Math.abs(mShadowYOffset);
+            if (halfWidth <= 0 || halfHeight <= 0) return null;
+
+            Bitmap bitmap = Bitmap.createBitmap(halfWidth * 2, halfHeight * 2, Bitmap.Config.ARGB_8888);
+            bitmap.setDensity(Bitmap.DENSITY_NONE);
+            Canvas canvas = new Canvas(bitmap);
+
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setStyle(Paint.Style.FILL);
+            paint.setColor(Color.BLACK);
+            paint.setShadowLayer(mShadowRadius, mShadowXOffset, mShadowYOffset, mShadowColor);
+            canvas.drawCircle(halfWidth, halfHeight, mCircleRadius, paint);
+
+            Paint erase = new Paint(Paint.ANTI_ALIAS_FLAG);
+            erase.setXfermode(PORTER_DUFF_CLEAR);
+            canvas.drawCircle(halfWidth, halfHeight, mCircleRadius, erase);
+            return bitmap;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CircleKey)) return false;
+
+            CircleKey key = (CircleKey) o;
+            return Float.compare(key.mCircleRadius, mCircleRadius) == 0
+                    && key.mShadowRadius == mShadowRadius
+                    && key.mShadowXOffset == mShadowXOffset
+                    && key.mShadowYOffset == mShadowYOffset
+                    && key.mShadowColor == mShadowColor
+                    && Float.compare(key.mDensity, mDensity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(mCircleRadius);
+            result = 31 * result + mShadowRadius;
+            result = 31 * result + mShadowXOffset;
+            result = 31 * result + mShadowYOffset;
+            result = 31 * result + mShadowColor;
+            result = 31 * result + Float.floatToIntBits(mDensity);
+            return result;
+        }
+    }
+
+    /**
+     * Shadow of a small round rectangle, with the rectangle itself erased, meant to be stretched
+     * with {@link #drawRoundRectShadow}. The rectangle is kept just large enough for the corners and
+     * the blur not to overlap the stretchable middle row and column. When a height is given the
+     * rectangle keeps it and only the middle column is stretchable.
+     */
+    static final class RoundRectKey extends Key {
+
+        private final int mCornerRadius;
+        private final int mHeight;
+        private final int mShadowRadius;
+        private final int mShadowXOffset;
+        private final int mShadowYOffset;
+        private final int mShadowColor;
+        private final float mDensity;
+
+        RoundRectKey(int cornerRadius, int shadowRadius, int shadowXOffset, int shadowYOffset,
+                     int shadowColor, float density) {
+            this(cornerRadius, 0, shadowRadius, shadowXOffset, shadowYOffset, shadowColor, density);
+        }
+
+        RoundRectKey(int cornerRadius, int height, int shadowRadius, int shadowXOffset,
+                     int shadowYOffset, int shadowColor, float density) {
+            mCornerRadius = height > 0 ? Math.min(cornerRadius, height / 2) : cornerRadius;
+            mHeight = height;
+            mShadowRadius = shadowRadius;
+            mShadowXOffset = shadowXOffset;
+            mShadowYOffset = shadowYOffset;
+            mShadowColor = shadowColor;
+            mDensity = density;
+        }
+
+        boolean isStretchableVertically() {
+            return mHeight <= 0;
+        }
+
+        int getCoreSize() {
+            return mCornerRadius + mShadowRadius;
+        }
+
+        int getPaddingX() {
+            return mShadowRadius + Math.abs(mShadowXOffset);
+        }
+
+        int getPaddingY() {
+            return mShadowRadius + Math.abs(mShadowYOffset);
+        }
+
+        @Override
+        Bitmap render() {
+            int padX = getPaddingX();
+            int padY = getPaddingY();
+            int width = getCoreSize() * 2 + 1;
+            int height = isStretchableVertically() ? width : mHeight;
+
+            Bitmap bitmap = Bitmap.createBitmap(width + padX * 2, height + padY * 2, Bitmap.Config.ARGB_8888);
+            bitmap.setDensity(Bitmap.DENSITY_NONE);
+            Canvas canvas = new Canvas(bitmap);
+            RectF rect = new RectF(padX, padY, padX + width, padY + height);
+
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setStyle(Paint.Style.FILL);
+            paint.setColor(Color.BLACK);
+            paint.setShadowLayer(mShadowRadius, mShadowXOffset, mShadowYOffset, mShadowColor);
+            canvas.drawRoundRect(rect, mCornerRadius, mCornerRadius, paint);
+
+            Paint erase = new Paint(Paint.ANTI_ALIAS_FLAG);
+            erase.setXfermode(PORTER_DUFF_CLEAR);
+            canvas.drawRoundRect(rect, mCornerRadius, mCornerRadius, erase);
+            return bitmap;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RoundRectKey)) return false;
+
+            RoundRectKey key = (RoundRectKey) o;
+            return key.mCornerRadius == mCornerRadius
+                    && key.mHeight == mHeight
+                    && key.mShadowRadius == mShadowRadius
+                    && key.mShadowXOffset == mShadowXOffset
+                    && key.mShadowYOffset == mShadowYOffset
+                    && key.mShadowColor == mShadowColor
+                    && Float.compare(key.mDensity, mDensity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mCornerRadius;
+            result = 31 * result + mHeight;
+            result = 31 * result + mShadowRadius;
+            result = 31 * result + mShadowXOffset;
+            result = 31 * result + mShadowYOffset;
+            result = 31 * result + mShadowColor;
+            result = 31 * result + Float.floatToIntBits(mDensity);
+            return result;
+        }
+    }
+}
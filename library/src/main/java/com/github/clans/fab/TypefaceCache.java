@@ -0,0 +1,80 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of typefaces created from assets, keyed by their asset path.
+ * <p>
+ * Menus using the same {@code menu_labels_customFont} share one {@link Typeface}, so the font
+ * file is read and parsed once per process. Fonts can be loaded ahead of time with
+ * {@link #preload(Context, String...)}, e.g. from {@code Application.onCreate()}.
+ */
+public final class TypefaceCache {
+
+    private static final Object sLock = new Object();
+    private static final Map<String, Typeface> sTypefaces = new HashMap<>();
+
+    private TypefaceCache() {
+    }
+
+    /**
+     * Returns the typeface for the given asset path, creating and caching it on the first call.
+     *
+     * @param context    any context, only its assets are used
+     * @param assetPath  path of the font file within the assets
+     * @throws RuntimeException if the font cannot be created
+     */
+    public static Typeface get(Context context, String assetPath) {
+        return get(context.getAssets(), assetPath);
+    }
+
+    /**
+     * Loads the given fonts into the cache on a background thread. Fonts which fail to load are
+     * skipped here and reported when a menu requests them.
+     *
+     * @param context    any context, only its assets are used
+     * @param assetPaths paths of the font files within the assets
+     */
+    public static void preload(Context context, final String... assetPaths) {
+        final AssetManager assets = context.getApplicationContext().getAssets();
+        Util.getBackgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String assetPath : assetPaths) {
+                    try {
+                        get(assets, assetPath);
+                    } catch (RuntimeException ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    public static void clear() {
+        synchronized (sLock) {
+            sTypefaces.clear();
+        }
+    }
+
+    private static Typeface get(AssetManager assets, String assetPath) {
+        synchronized (sLock) {
+            Typeface typeface = sTypefaces.get(assetPath);
+            if (typeface != null) return typeface;
+        }
+
+        // Created outside of the lock so a preload in progress does not block other fonts
+        Typeface typeface = Typeface.createFromAsset(assets, assetPath);
+        synchronized (sLock) {
+            Typeface cached = sTypefaces.get(assetPath);
+            if (cached != null) return cached;
+
+            sTypefaces.put(assetPath, typeface);
+            return typeface;
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.github.clans.fab;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.os.Build;
+import android.view.View;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 final class Util {
 
+    private static Executor sBackgroundExecutor;
+
     private Util() {
     }
 
@@ -18,10 +26,6 @@ final class Util {
         return width;
     }
 
-    static int getExtendedButtonLandscapeWidth(Context context) {
-        return context.getResources().getDimensionPixelSize(R.dimen.extended_button_width_landscape) - dpToPx(context,5f);
-    }
-
     static boolean hasJellyBean() {
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
     }
@@ -29,4 +33,31 @@ final class Util {
     static boolean hasLollipop() {
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
     }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    static void postOnAnimation(View view, Runnable action) {
+        if (hasJellyBean()) {
+            view.postOnAnimation(action);
+        } else {
+            view.post(action);
+        }
+    }
+
+    /**
+     * The background thread of the library, shared by font preloading and shadow rendering.
+     */
+    static synchronized Executor getBackgroundExecutor() {
+        if (sBackgroundExecutor == null) {
+            sBackgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "fab-background");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return sBackgroundExecutor;
+    }
 }
@@ -0,0 +1,35 @@
+package com.dmytrotarianyk.fab;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.widget.FrameLayout;
+
+/**
+ * Records how long drawing its children takes on the UI thread.
+ */
+class DrawTimingLayout extends FrameLayout {
+
+    private long mDrawNanos;
+    private int mDraws;
+
+    DrawTimingLayout(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        long start = System.nanoTime();
+        super.dispatchDraw(canvas);
+        mDrawNanos += System.nanoTime() - start;
+        mDraws++;
+    }
+
+    void reset() {
+        mDrawNanos = 0;
+        mDraws = 0;
+    }
+
+    float getAverageDrawMillis() {
+        return mDraws > 0 ? mDrawNanos / 1000000f / mDraws : 0f;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dmytrotarianyk.fab;
+
+import android.os.Bundle;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.github.clans.fab.ExtendedFloatingActionButton;
+import com.github.clans.fab.ExtendedFloatingActionMenu;
+import com.github.clans.fab.sample.MainActivity;
+import com.github.fab.sample.R;
+
+/**
+ * Lays out an extended menu with 10 items repeatedly and reports the average time of a measure
+ * and layout pass. The items are styled when they are added, so a pass only positions views.
+ */
+public class ExtendedMenuLayoutBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final int ITEMS = 10;
+    private static final int WARMUP_PASSES = 10;
+    private static final int PASSES = 200;
+
+    private ExtendedFloatingActionMenu mMenu;
+
+    public ExtendedMenuLayoutBenchmark() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final MainActivity activity = getActivity();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                View root = LayoutInflater.from(activity).inflate(R.layout.home_fragment, null);
+                mMenu = (ExtendedFloatingActionMenu) root.findViewById(R.id.fabExtended);
+                // The layout comes with two items
+                for (int i = 2; i < ITEMS; i++) {
+                    ExtendedFloatingActionButton fab = new ExtendedFloatingActionButton(activity);
+                    fab.setImageResource(R.drawable.ic_star);
+                    fab.setLabelText("ITEM " + i);
+                    mMenu.addMenuButton(fab);
+                }
+                activity.setContentView(root);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+
+    public void testLayout() throws Exception {
+        final long[] time = new long[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int widthSpec = View.MeasureSpec.makeMeasureSpec(mMenu.getWidth(), View.MeasureSpec.EXACTLY);
+                int heightSpec = View.MeasureSpec.makeMeasureSpec(mMenu.getHeight(), View.MeasureSpec.EXACTLY);
+                for (int i = 0; i < WARMUP_PASSES + PASSES; i++) {
+                    if (i == WARMUP_PASSES) {
+                        time[0] = System.nanoTime();
+                    }
+                    mMenu.requestLayout();
+                    mMenu.measure(widthSpec, heightSpec);
+                    mMenu.layout(mMenu.getLeft(), mMenu.getTop(), mMenu.getRight(), mMenu.getBottom());
+                }
+                time[0] = System.nanoTime() - time[0];
+            }
+        });
+
+        Bundle results = new Bundle();
+        results.putInt("items", ITEMS);
+        results.putLong("averageLayoutMicros", time[0] / PASSES / 1000);
+        Log.i("FabBenchmark", "extended menu layout: " + results);
+        getInstrumentation().sendStatus(0, results);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dmytrotarianyk.fab;
+
+import android.annotation.TargetApi;
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an action on every frame for a number of frames and reports the time between frames
+ * and the time the UI thread spent drawing the content.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class FrameBenchmark {
+
+    static final String TAG = "FabBenchmark";
+
+    // Frames taking longer than two refreshes at 60 Hz skipped at least one
+    private static final long JANK_THRESHOLD_NANOS = 33333333L;
+
+    private final Instrumentation mInstrumentation;
+    private final DrawTimingLayout mContent;
+
+    private long mLastFrameNanos;
+    private long mFrameNanos;
+    private int mFrames;
+    private int mJankFrames;
+
+    FrameBenchmark(Instrumentation instrumentation, DrawTimingLayout content) {
+        mInstrumentation = instrumentation;
+        mContent = content;
+    }
+
+    /**
+     * Runs the action before each of the given number of frames and reports the result under
+     * the given name.
+     */
+    void run(final String name, final int frames, final Runnable action) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mContent.reset();
+                mLastFrameNanos = 0;
+                mFrameNanos = 0;
+                mFrames = 0;
+                mJankFrames = 0;
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (mLastFrameNanos != 0) {
+                            long frameNanos = frameTimeNanos - mLastFrameNanos;
+                            mFrameNanos += frameNanos;
+                            mFrames++;
+                            if (frameNanos > JANK_THRESHOLD_NANOS) {
+                                mJankFrames++;
+                            }
+                        }
+                        mLastFrameNanos = frameTimeNanos;
+
+                        if (mFrames == frames) {
+                            done.countDown();
+                            return;
+                        }
+                        action.run();
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+        if (!done.await(frames, TimeUnit.SECONDS)) {
+            throw new AssertionError(name + " did not finish");
+        }
+        mInstrumentation.waitForIdleSync();
+
+        float averageFrameMillis = mFrames > 0 ? mFrameNanos / 1000000f / mFrames : 0f;
+        float averageDrawMillis = mContent.getAverageDrawMillis();
+        Log.i(TAG, String.format(Locale.US, "%s: %.2f ms per frame, %.3f ms drawing, %d/%d janky",
+                name, averageFrameMillis, averageDrawMillis, mJankFrames, mFrames));
+
+        Bundle results = new Bundle();
+        results.putFloat(name + ".frameMillis", averageFrameMillis);
+        results.putFloat(name + ".drawMillis", averageDrawMillis);
+        results.putInt(name + ".jankFrames", mJankFrames);
+        mInstrumentation.sendStatus(0, results);
+    }
+}
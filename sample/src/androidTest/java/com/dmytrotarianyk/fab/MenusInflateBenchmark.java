@@ -0,0 +1,52 @@
+package com.dmytrotarianyk.fab;
+
+import android.os.Bundle;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.widget.FrameLayout;
+
+import com.github.clans.fab.sample.MainActivity;
+import com.github.fab.sample.R;
+
+/**
+ * Inflates the menus screen repeatedly and reports the first and the average inflate time.
+ * The first inflate parses the button and label animations, later ones build them from the
+ * cached templates.
+ */
+public class MenusInflateBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final int INFLATES = 20;
+
+    public MenusInflateBenchmark() {
+        super(MainActivity.class);
+    }
+
+    public void testInflateMenus() throws Exception {
+        final MainActivity activity = getActivity();
+        final long[] times = new long[INFLATES];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                LayoutInflater inflater = LayoutInflater.from(activity);
+                FrameLayout parent = new FrameLayout(activity);
+                for (int i = 0; i < INFLATES; i++) {
+                    long start = System.nanoTime();
+                    inflater.inflate(R.layout.menus_fragment, parent, false);
+                    times[i] = System.nanoTime() - start;
+                }
+            }
+        });
+
+        long total = 0;
+        for (int i = 1; i < INFLATES; i++) {
+            total += times[i];
+        }
+
+        Bundle results = new Bundle();
+        results.putLong("firstInflateMicros", times[0] / 1000);
+        results.putLong("averageInflateMicros", total / (INFLATES - 1) / 1000);
+        Log.i("FabBenchmark", "menus inflate: " + results);
+        getInstrumentation().sendStatus(0, results);
+    }
+}
@@ -0,0 +1,134 @@
+package com.dmytrotarianyk.fab;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.Choreographer;
+import android.widget.FrameLayout;
+
+import com.github.clans.fab.FloatingActionButton;
+import com.github.clans.fab.sample.MainActivity;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Floods {@link FloatingActionButton#postProgress(int, boolean)} from several threads and checks
+ * that the last value wins and that the button does not redraw more often than frames are drawn.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class PostProgressStressTest extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final int PRODUCERS = 4;
+    private static final int UPDATES_PER_PRODUCER = 20000;
+    private static final int FINAL_PROGRESS = 42;
+
+    private CountingButton mButton;
+    private int mFrames;
+    private boolean mCountingFrames;
+
+    private final Choreographer.FrameCallback mFrameCounter = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mCountingFrames) {
+                mFrames++;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+    };
+
+    public PostProgressStressTest() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final MainActivity activity = getActivity();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameLayout content = new FrameLayout(activity);
+                mButton = new CountingButton(activity);
+                mButton.setMax(100);
+                content.addView(mButton);
+                activity.setContentView(content);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Shows the progress bar so the flood below only moves the arc
+                mButton.setProgress(0, false);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return;
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mButton.mDraws = 0;
+                mFrames = 0;
+                mCountingFrames = true;
+                Choreographer.getInstance().postFrameCallback(mFrameCounter);
+            }
+        });
+
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        for (int i = 0; i < PRODUCERS; i++) {
+            final Random random = new Random(i);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < UPDATES_PER_PRODUCER; j++) {
+                        mButton.postProgress(random.nextInt(100), false);
+                    }
+                    done.countDown();
+                }
+            }, "progress-producer-" + i).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        mButton.postProgress(FINAL_PROGRESS, false);
+        getInstrumentation().waitForIdleSync();
+        Thread.sleep(100);
+
+        final int[] result = new int[3];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mCountingFrames = false;
+                result[0] = mButton.getProgress();
+                result[1] = mButton.mDraws;
+                result[2] = mFrames;
+            }
+        });
+
+        assertEquals(FINAL_PROGRESS, result[0]);
+        // The frame in flight when counting started may draw without being counted
+        assertTrue("draws: " + result[1] + ", frames: " + result[2], result[1] <= result[2] + 1);
+    }
+
+    private static class CountingButton extends FloatingActionButton {
+
+        int mDraws;
+
+        CountingButton(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+            mDraws++;
+        }
+    }
+}
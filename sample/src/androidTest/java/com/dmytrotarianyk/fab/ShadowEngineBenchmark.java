@@ -0,0 +1,81 @@
+package com.dmytrotarianyk.fab;
+
+import android.os.Build;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import com.github.clans.fab.ExtendedFloatingActionButton;
+import com.github.clans.fab.FloatingActionButton;
+import com.github.clans.fab.sample.MainActivity;
+import com.github.fab.sample.R;
+
+/**
+ * Redraws ten extended buttons every frame with each shadow engine and reports the frame times.
+ */
+public class ShadowEngineBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final int BUTTONS = 10;
+    private static final int FRAMES = 300;
+
+    private DrawTimingLayout mContent;
+    private LinearLayout mButtons;
+
+    public ShadowEngineBenchmark() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final MainActivity activity = getActivity();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mContent = new DrawTimingLayout(activity);
+                mButtons = new LinearLayout(activity);
+                mButtons.setOrientation(LinearLayout.VERTICAL);
+                mContent.addView(mButtons);
+                activity.setContentView(mContent);
+            }
+        });
+    }
+
+    public void testExtendedButtonShadow() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return;
+
+        FrameBenchmark benchmark = new FrameBenchmark(getInstrumentation(), mContent);
+        Runnable redraw = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < mButtons.getChildCount(); i++) {
+                    mButtons.getChildAt(i).invalidate();
+                }
+            }
+        };
+
+        showButtons(FloatingActionButton.SHADOW_ENGINE_BITMAP);
+        benchmark.run("shadowBitmap", FRAMES, redraw);
+
+        // Falls back to the bitmap engine below API 21
+        showButtons(FloatingActionButton.SHADOW_ENGINE_ELEVATION);
+        benchmark.run("shadowElevation", FRAMES, redraw);
+    }
+
+    private void showButtons(final int shadowEngine) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mButtons.removeAllViews();
+                for (int i = 0; i < BUTTONS; i++) {
+                    ExtendedFloatingActionButton button = new ExtendedFloatingActionButton(getActivity());
+                    button.setImageResource(R.drawable.ic_star);
+                    button.setShadowEngine(shadowEngine);
+                    mButtons.addView(button, new LinearLayout.LayoutParams(
+                            ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+                }
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.clans.fab.sample;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import com.github.clans.fab.FloatingActionButton;
+import com.github.clans.fab.FloatingActionMenu;
+import com.github.fab.sample.R;
+
+import java.util.Locale;
+
+/**
+ * Opens and closes menus with 4, 8 and 16 items and reports the time between frames while they
+ * animate, once for each transition layers mode.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class BenchmarkFragment extends Fragment {
+
+    private static final int[] ITEM_COUNTS = {4, 8, 16};
+    private static final int[] TRANSITION_LAYERS = {
+            FloatingActionMenu.LAYERS_WHOLE_TRANSITION, FloatingActionMenu.LAYERS_PER_ANIMATION};
+    private static final int TOGGLES = 10;
+    private static final long SETTLE_DELAY = 500;
+    private static final long TRANSITION_DURATION = 400;
+    // Frames taking longer than two refreshes at 60 Hz skipped at least one
+    private static final long JANK_THRESHOLD_NANOS = 33333333L;
+
+    private Handler mUiHandler = new Handler();
+    private FrameLayout mMenuContainer;
+    private TextView mResults;
+    private Button mRunButton;
+    private FloatingActionMenu mMenu;
+    private int mRun;
+    private int mToggle;
+    private long mLastFrameNanos;
+    private long mFrameNanos;
+    private int mFrames;
+    private int mJankFrames;
+    private boolean mRecording;
+
+    private Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRecording) return;
+
+            if (mLastFrameNanos != 0) {
+                long frameNanos = frameTimeNanos - mLastFrameNanos;
+                mFrameNanos += frameNanos;
+                mFrames++;
+                if (frameNanos > JANK_THRESHOLD_NANOS) {
+                    mJankFrames++;
+                }
+            }
+            mLastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    private Runnable mToggleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mToggle == TOGGLES) {
+                reportRun();
+                mRun++;
+                startRun();
+                return;
+            }
+
+            mToggle++;
+            mLastFrameNanos = 0;
+            mRecording = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            mMenu.toggle(true);
+            mUiHandler.postDelayed(mStopRecordingRunnable,
+                    TRANSITION_DURATION + mMenu.getAnimationDelayPerItem() * getItemCount());
+        }
+    };
+
+    private Runnable mStopRecordingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRecording = false;
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mUiHandler.postDelayed(mToggleRunnable, SETTLE_DELAY);
+        }
+    };
+
+    @Nullable
+    @Override
+    public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.benchmark_fragment, container, false);
+    }
+
+    @Override
+    public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        mMenuContainer = (FrameLayout) view.findViewById(R.id.menu_container);
+        mResults = (TextView) view.findViewById(R.id.results);
+        mRunButton = (Button) view.findViewById(R.id.run);
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            mResults.setText(R.string.benchmark_unsupported);
+            mRunButton.setEnabled(false);
+            return;
+        }
+
+        mRunButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mRunButton.setEnabled(false);
+                mResults.setText(R.string.benchmark_header);
+                mRun = 0;
+                startRun();
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mUiHandler.removeCallbacksAndMessages(null);
+        if (mRecording) {
+            mRecording = false;
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+    }
+
+    private void startRun() {
+        mMenuContainer.removeAllViews();
+        if (mRun == ITEM_COUNTS.length * TRANSITION_LAYERS.length) {
+            mMenu = null;
+            mRunButton.setEnabled(true);
+            return;
+        }
+
+        mMenu = new FloatingActionMenu(getActivity());
+        mMenu.setTransitionLayers(TRANSITION_LAYERS[mRun % TRANSITION_LAYERS.length]);
+        for (int i = 0; i < getItemCount(); i++) {
+            FloatingActionButton fab = new FloatingActionButton(getActivity());
+            fab.setButtonSize(FloatingActionButton.SIZE_MINI);
+            fab.setLabelText(getString(R.string.benchmark_item, i + 1));
+            fab.setImageResource(R.drawable.ic_star);
+            mMenu.addMenuButton(fab);
+        }
+        mMenuContainer.addView(mMenu, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+        mToggle = 0;
+        mFrameNanos = 0;
+        mFrames = 0;
+        mJankFrames = 0;
+        mUiHandler.postDelayed(mToggleRunnable, SETTLE_DELAY);
+    }
+
+    private int getItemCount() {
+        return ITEM_COUNTS[mRun / TRANSITION_LAYERS.length];
+    }
+
+    private void reportRun() {
+        boolean wholeTransition = TRANSITION_LAYERS[mRun % TRANSITION_LAYERS.length]
+                == FloatingActionMenu.LAYERS_WHOLE_TRANSITION;
+        float averageMillis = mFrames > 0 ? mFrameNanos / 1000000f / mFrames : 0f;
+        mResults.append(String.format(Locale.US, "\n%2d items  %-6s  %5.2f ms  %d/%d janky",
+                getItemCount(), wholeTransition ? "whole" : "per", averageMillis, mJankFrames, mFrames));
+    }
+}
@@ -33,6 +33,9 @@ public class MainActivity extends AppCompatActivity {
                 case R.id.progress:
                     fragment = new ProgressFragment();
                     break;
+                case R.id.benchmark:
+                    fragment = new BenchmarkFragment();
+                    break;
             }
 
             ft.replace(R.id.fragment, fragment).commit();